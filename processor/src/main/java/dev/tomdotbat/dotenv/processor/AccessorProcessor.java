@@ -0,0 +1,365 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv.processor;
+
+import dev.tomdotbat.dotenv.ConfigurationKey;
+import dev.tomdotbat.dotenv.annotation.Setting;
+import dev.tomdotbat.dotenv.annotation.Settings;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates a typed accessor class for each interface annotated with {@link Settings}.
+ * <p>
+ * The generated class implements the interface over a Configuration. Each method reads its setting through a
+ * ConfigurationKey held in a static final field, so a read goes straight to the key's slot rather than hashing its name,
+ * and returns it as the method's primitive type, with no reflection at runtime.
+ * Defaults are parsed when the accessor is generated and written into it as literals.
+ */
+@SupportedAnnotationTypes("dev.tomdotbat.dotenv.annotation.Settings")
+public final class AccessorProcessor extends AbstractProcessor {
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment) {
+        for (final Element ELEMENT: roundEnvironment.getElementsAnnotatedWith(Settings.class)) {
+            if (ELEMENT.getKind() != ElementKind.INTERFACE) {
+                error(ELEMENT, "Only interfaces can be annotated with @Settings.");
+                continue;
+            }
+
+            generate((TypeElement) ELEMENT);
+        }
+
+        return true;
+    }
+
+    /**
+     * Generates the accessor class for an interface, reporting an error for each method that can't be implemented.
+     * @param INTERFACE the interface to implement.
+     */
+    private void generate(final TypeElement INTERFACE) {
+        final List<Accessor> ACCESSORS = new ArrayList<>();
+        final Set<String> KEYS = new HashSet<>();
+        boolean valid = true;
+
+        for (final ExecutableElement METHOD: ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(INTERFACE))) {
+            if (!METHOD.getModifiers().contains(Modifier.ABSTRACT) || METHOD.getEnclosingElement().getKind() != ElementKind.INTERFACE)
+                continue;
+
+            final Accessor ACCESSOR = createAccessor(METHOD);
+            if (ACCESSOR == null) {
+                valid = false;
+                continue;
+            }
+
+            if (!KEYS.add(ACCESSOR.KEY)) {
+                error(METHOD, "The key \"" + ACCESSOR.KEY + "\" is read by more than one method.");
+                valid = false;
+            }
+
+            ACCESSORS.add(ACCESSOR);
+        }
+
+        if (!valid) return;
+
+        final String PACKAGE = processingEnv.getElementUtils().getPackageOf(INTERFACE).getQualifiedName().toString();
+        final String NAME = getAccessorName(INTERFACE);
+
+        try (final Writer WRITER = processingEnv.getFiler()
+                .createSourceFile(PACKAGE.isEmpty() ? NAME : PACKAGE + "." + NAME, INTERFACE).openWriter()) {
+            WRITER.write(writeSource(PACKAGE, NAME, INTERFACE, ACCESSORS));
+        }
+        catch (IOException ex) {
+            error(INTERFACE, "The accessor couldn't be written: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Works out how a method reads its setting, checking its signature and default.
+     * @param METHOD the method to implement.
+     * @return the Accessor for the method, or null if it can't be implemented, in which case an error has been reported.
+     */
+    private Accessor createAccessor(final ExecutableElement METHOD) {
+        if (!METHOD.getParameters().isEmpty() || !METHOD.getTypeParameters().isEmpty()) {
+            error(METHOD, "Settings methods can't take arguments or type parameters.");
+            return null;
+        }
+
+        final Type TYPE = Type.of(METHOD.getReturnType());
+        if (TYPE == null) {
+            error(METHOD, "Settings methods must return a String, int, long, double or boolean.");
+            return null;
+        }
+
+        final Setting SETTING = METHOD.getAnnotation(Setting.class);
+        final String KEY = SETTING != null && !SETTING.key().isEmpty() ? SETTING.key() : ConfigurationKey.nameOf(METHOD.getSimpleName().toString());
+
+        String defaultLiteral = null;
+        if (SETTING != null && SETTING.defaultValue().length > 0) {
+            if (SETTING.defaultValue().length > 1) {
+                error(METHOD, "A setting can only have one default.");
+                return null;
+            }
+
+            defaultLiteral = TYPE.toLiteral(SETTING.defaultValue()[0]);
+            if (defaultLiteral == null) {
+                error(METHOD, "The default \"" + SETTING.defaultValue()[0] + "\" isn't a valid " + TYPE.NAME + ".");
+                return null;
+            }
+        }
+        else {
+            //Without a default, the method throws whatever the Configuration's getter does, so it must declare them.
+            for (final String EXCEPTION: TYPE.EXCEPTIONS) {
+                if (!declares(METHOD, EXCEPTION)) {
+                    error(METHOD, "Settings methods without a default must declare that they throw " + EXCEPTION + ".");
+                    return null;
+                }
+            }
+        }
+
+        return new Accessor(METHOD, TYPE, KEY, defaultLiteral);
+    }
+
+    /**
+     * Returns whether a method declares that it throws an Exception, or one of its superclasses.
+     * @param METHOD the method to check.
+     * @param EXCEPTION the qualified name of the Exception.
+     * @return true if the method can throw the Exception.
+     */
+    private boolean declares(final ExecutableElement METHOD, final String EXCEPTION) {
+        final TypeElement EXCEPTION_ELEMENT = processingEnv.getElementUtils().getTypeElement(EXCEPTION);
+        if (EXCEPTION_ELEMENT == null) return false;
+
+        for (final TypeMirror THROWN: METHOD.getThrownTypes())
+            if (processingEnv.getTypeUtils().isSubtype(EXCEPTION_ELEMENT.asType(), THROWN)) return true;
+
+        return false;
+    }
+
+    /**
+     * Writes the source of an accessor class.
+     * @param PACKAGE the package of the interface, which may be empty.
+     * @param NAME the simple name of the accessor class.
+     * @param INTERFACE the interface being implemented.
+     * @param ACCESSORS the methods to implement.
+     * @return the source of the class.
+     */
+    private static String writeSource(final String PACKAGE, final String NAME, final TypeElement INTERFACE, final List<Accessor> ACCESSORS) {
+        final StringBuilder SOURCE = new StringBuilder();
+        if (!PACKAGE.isEmpty()) SOURCE.append("package ").append(PACKAGE).append(";\n\n");
+
+        SOURCE.append("/**\n")
+                .append(" * Reads the settings of {@link ").append(INTERFACE.getQualifiedName()).append("} from a Configuration.\n")
+                .append(" */\n")
+                .append("@javax.annotation.processing.Generated(\"").append(AccessorProcessor.class.getName()).append("\")\n")
+                .append("public final class ").append(NAME).append(" implements ").append(INTERFACE.getQualifiedName()).append(" {\n")
+                .append("    /**\n")
+                .append("     * Creates an accessor reading from the given Configuration.\n")
+                .append("     * @param configuration the Configuration to read the settings from.\n")
+                .append("     */\n")
+                .append("    public ").append(NAME).append("(").append(CONFIGURATION_CLASS).append(" configuration) {\n")
+                .append("        this.CONFIGURATION = java.util.Objects.requireNonNull(configuration);\n")
+                .append("    }\n");
+
+        for (final Accessor ACCESSOR: ACCESSORS) {
+            SOURCE.append("\n    @Override\n    public ").append(ACCESSOR.TYPE.NAME).append(' ').append(ACCESSOR.METHOD.getSimpleName()).append("()");
+
+            final List<? extends TypeMirror> THROWN = ACCESSOR.METHOD.getThrownTypes();
+            for (int i = 0; i < THROWN.size(); i++)
+                SOURCE.append(i == 0 ? " throws " : ", ").append(THROWN.get(i));
+
+            SOURCE.append(" {\n        return CONFIGURATION.").append(ACCESSOR.TYPE.GETTER).append('(').append(ACCESSOR.getFieldName());
+            if (ACCESSOR.DEFAULT_LITERAL != null) SOURCE.append(", ").append(ACCESSOR.DEFAULT_LITERAL);
+            SOURCE.append(");\n    }\n");
+        }
+
+        SOURCE.append("\n    private final ").append(CONFIGURATION_CLASS).append(" CONFIGURATION;\n");
+
+        if (!ACCESSORS.isEmpty()) SOURCE.append('\n');
+        for (final Accessor ACCESSOR: ACCESSORS)
+            SOURCE.append("    private static final ").append(KEY_CLASS).append(' ').append(ACCESSOR.getFieldName())
+                    .append(" = ").append(CONFIGURATION_CLASS).append(".key(").append(toStringLiteral(ACCESSOR.KEY)).append(");\n");
+
+        return SOURCE.append("}\n").toString();
+    }
+
+    /**
+     * Gets the name of the accessor class for an interface, which is its simple name with an Accessor suffix,
+     * joined to the names of any classes it is nested in.
+     * @param INTERFACE the interface.
+     * @return the simple name of the accessor class.
+     */
+    private static String getAccessorName(final TypeElement INTERFACE) {
+        final StringBuilder NAME = new StringBuilder(INTERFACE.getSimpleName()).append("Accessor");
+
+        for (Element enclosing = INTERFACE.getEnclosingElement(); enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement())
+            NAME.insert(0, '_').insert(0, enclosing.getSimpleName());
+
+        return NAME.toString();
+    }
+
+    /**
+     * Writes a String as a Java string literal.
+     * @param TEXT the String to write.
+     * @return the quoted and escaped literal.
+     */
+    private static String toStringLiteral(final String TEXT) {
+        final StringBuilder LITERAL = new StringBuilder(TEXT.length() + 2).append('"');
+
+        for (int i = 0; i < TEXT.length(); i++) {
+            final char CHAR = TEXT.charAt(i);
+
+            if (CHAR == '"' || CHAR == '\\') LITERAL.append('\\').append(CHAR);
+            else if (CHAR < ' ' || CHAR > '~') LITERAL.append(String.format("\\u%04x", (int) CHAR));
+            else LITERAL.append(CHAR);
+        }
+
+        return LITERAL.append('"').toString();
+    }
+
+    /**
+     * Reports an error against an element, failing the build.
+     * @param ELEMENT the element the error is about.
+     * @param MESSAGE the error message.
+     */
+    private void error(final Element ELEMENT, final String MESSAGE) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, MESSAGE, ELEMENT);
+    }
+
+    private static final String CONFIGURATION_CLASS = "dev.tomdotbat.dotenv.Configuration";
+    private static final String KEY_CLASS = "dev.tomdotbat.dotenv.ConfigurationKey";
+    private static final String MISSING_KEY_EXCEPTION = "dev.tomdotbat.dotenv.exception.MissingKeyException";
+    private static final String BOOLEAN_FORMAT_EXCEPTION = "dev.tomdotbat.dotenv.exception.BooleanFormatException";
+
+    /**
+     * The return types a settings method can have, with the getter that reads each one.
+     */
+    private enum Type {
+        STRING("String", "getString"),
+        INTEGER("int", "getInteger", MISSING_KEY_EXCEPTION),
+        LONG("long", "getLong", MISSING_KEY_EXCEPTION),
+        DOUBLE("double", "getDouble", MISSING_KEY_EXCEPTION),
+        BOOLEAN("boolean", "getBoolean", MISSING_KEY_EXCEPTION, BOOLEAN_FORMAT_EXCEPTION);
+
+        Type(final String NAME, final String GETTER, final String... EXCEPTIONS) {
+            this.NAME = NAME;
+            this.GETTER = GETTER;
+            this.EXCEPTIONS = EXCEPTIONS;
+        }
+
+        /**
+         * Finds the Type matching a method's return type.
+         * @param returnType the return type of the method.
+         * @return the matching Type, or null if the return type isn't supported.
+         */
+        private static Type of(TypeMirror returnType) {
+            switch (returnType.getKind()) {
+                case INT: return INTEGER;
+                case LONG: return LONG;
+                case DOUBLE: return DOUBLE;
+                case BOOLEAN: return BOOLEAN;
+                case DECLARED: return returnType.toString().equals("java.lang.String") ? STRING : null;
+                default: return null;
+            }
+        }
+
+        /**
+         * Parses a default as the Configuration's getter would, writing it as a Java literal.
+         * @param value the default as it would be written in an Environment File.
+         * @return the literal, or null if the default isn't valid for the Type.
+         */
+        private String toLiteral(String value) {
+            try {
+                switch (this) {
+                    case STRING: return toStringLiteral(value);
+                    case INTEGER: return String.valueOf(Integer.parseInt(value));
+                    case LONG: return Long.parseLong(value) + "L";
+                    case BOOLEAN:
+                        if (value.equalsIgnoreCase("true")) return "true";
+                        return value.equalsIgnoreCase("false") ? "false" : null;
+                    default:
+                        final double PARSED = Double.parseDouble(value);
+                        if (Double.isFinite(PARSED)) return PARSED + "D";
+
+                        return "Double.longBitsToDouble(" + Double.doubleToRawLongBits(PARSED) + "L)";
+                }
+            }
+            catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+
+        private final String NAME;
+        private final String GETTER;
+
+        /**
+         * The checked Exceptions the getter throws when the setting has no default.
+         */
+        private final String[] EXCEPTIONS;
+    }
+
+    /**
+     * A method of a settings interface, with the key it reads and its default.
+     */
+    private static final class Accessor {
+        private Accessor(final ExecutableElement METHOD, final Type TYPE, final String KEY, final String DEFAULT_LITERAL) {
+            this.METHOD = METHOD;
+            this.TYPE = TYPE;
+            this.KEY = KEY;
+            this.DEFAULT_LITERAL = DEFAULT_LITERAL;
+        }
+
+        /**
+         * Gets the name of the field holding the method's ConfigurationKey, which is named after the method.
+         * @return the field name.
+         */
+        private String getFieldName() {
+            return ConfigurationKey.nameOf(METHOD.getSimpleName().toString()) + "_KEY";
+        }
+
+        private final ExecutableElement METHOD;
+        private final Type TYPE;
+        private final String KEY;
+
+        /**
+         * The default as a Java literal, or null if the setting doesn't have one.
+         */
+        private final String DEFAULT_LITERAL;
+    }
+}
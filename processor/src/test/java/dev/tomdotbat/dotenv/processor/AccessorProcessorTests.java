@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv.processor;
+
+import dev.tomdotbat.dotenv.Configuration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccessorProcessorTests {
+    @Test
+    public void testGenerateAccessor() throws Exception {
+        final DiagnosticCollector<JavaFileObject> DIAGNOSTICS = compile(
+                "package example;\n" +
+                "import dev.tomdotbat.dotenv.annotation.*;\n" +
+                "import dev.tomdotbat.dotenv.exception.MissingKeyException;\n" +
+                "@Settings\n" +
+                "public interface PoolSettings {\n" +
+                "    int poolSize() throws MissingKeyException;\n" +
+                "    @Setting(key = \"DB_URL\") String url();\n" +
+                "    @Setting(defaultValue = \"30000\") long timeoutMillis();\n" +
+                "    @Setting(defaultValue = \"TRUE\") boolean enabled();\n" +
+                "    @Setting(defaultValue = \"0.5\") double ratio();\n" +
+                "    @Setting(defaultValue = \"a \\\"quoted\\\" \\u00e9\") String label();\n" +
+                "}\n"
+        );
+        assertTrue(DIAGNOSTICS.getDiagnostics().isEmpty(), DIAGNOSTICS.getDiagnostics().toString());
+
+        final Path ENV_PATH = directory.resolve(".env");
+        Files.writeString(ENV_PATH, "POOL_SIZE=8\nDB_URL=jdbc:h2:mem\nRATIO=invalid\n");
+
+        final Configuration CONFIG = new Configuration(ENV_PATH);
+        CONFIG.load();
+
+        try (final URLClassLoader LOADER = new URLClassLoader(new URL[]{directory.resolve("classes").toUri().toURL()}, getClass().getClassLoader())) {
+            final Class<?> ACCESSOR = LOADER.loadClass("example.PoolSettingsAccessor");
+            final Object SETTINGS = ACCESSOR.getConstructor(Configuration.class).newInstance(CONFIG);
+
+            assertEquals(8, ACCESSOR.getMethod("poolSize").invoke(SETTINGS));
+            assertEquals("jdbc:h2:mem", ACCESSOR.getMethod("url").invoke(SETTINGS));
+            assertEquals(30000L, ACCESSOR.getMethod("timeoutMillis").invoke(SETTINGS));
+            assertEquals(true, ACCESSOR.getMethod("enabled").invoke(SETTINGS));
+            assertEquals(0.5, ACCESSOR.getMethod("ratio").invoke(SETTINGS));
+            assertEquals("a \"quoted\" \u00e9", ACCESSOR.getMethod("label").invoke(SETTINGS));
+        }
+    }
+
+    @Test
+    public void testRejectInvalidSettings() throws IOException {
+        final DiagnosticCollector<JavaFileObject> DIAGNOSTICS = compile(
+                "package example;\n" +
+                "import dev.tomdotbat.dotenv.annotation.*;\n" +
+                "@Settings\n" +
+                "public interface BrokenSettings {\n" +
+                "    @Setting(defaultValue = \"many\") int poolSize();\n" +
+                "    int retries();\n" +
+                "    java.util.List<String> hosts();\n" +
+                "}\n"
+        );
+
+        final List<String> ERRORS = DIAGNOSTICS.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                .map(diagnostic -> diagnostic.getMessage(null))
+                .toList();
+
+        assertEquals(3, ERRORS.size(), ERRORS.toString());
+        assertTrue(ERRORS.get(0).contains("\"many\" isn't a valid int"));
+        assertFalse(Files.exists(directory.resolve("classes/example/BrokenSettingsAccessor.class")));
+    }
+
+    /**
+     * Compiles a single source file with the processor, writing the classes to the temporary directory.
+     * @param SOURCE the source of the file, which must declare a single public interface in the example package.
+     * @return the diagnostics reported while compiling.
+     * @throws IOException if the output directory can't be created.
+     */
+    private DiagnosticCollector<JavaFileObject> compile(final String SOURCE) throws IOException {
+        final String NAME = SOURCE.substring(SOURCE.indexOf("interface ") + 10, SOURCE.indexOf(" {"));
+        final JavaFileObject FILE = new SimpleJavaFileObject(URI.create("string:///example/" + NAME + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return SOURCE;
+            }
+        };
+
+        final Path CLASSES = Files.createDirectories(directory.resolve("classes"));
+        final JavaCompiler COMPILER = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> DIAGNOSTICS = new DiagnosticCollector<>();
+
+        final JavaCompiler.CompilationTask TASK = COMPILER.getTask(null, null, DIAGNOSTICS,
+                List.of("-classpath", System.getProperty("java.class.path"), "-d", CLASSES.toString(), "-implicit:class"),
+                null, List.of(FILE));
+
+        TASK.setProcessors(List.of(new AccessorProcessor()));
+        TASK.call();
+
+        return DIAGNOSTICS;
+    }
+
+    @TempDir
+    Path directory;
+}
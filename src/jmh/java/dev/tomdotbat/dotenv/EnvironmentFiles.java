@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates Environment Files of a given size for the benchmarks.
+ */
+/* package-private */ final class EnvironmentFiles {
+    private EnvironmentFiles() {}
+
+    /**
+     * Generates the text of an Environment File with the given number of settings.
+     * Every setting is named SETTING_<index> and cycles through String, integer, boolean and quoted values,
+     * with a comment line before every tenth setting.
+     * @param SIZE the number of settings to generate.
+     * @return the text of the Environment File.
+     */
+    public static String generateText(final int SIZE) {
+        final StringBuilder TEXT_BUILDER = new StringBuilder(SIZE * 32);
+
+        for (int i = 0; i < SIZE; i++) {
+            if (i % 10 == 0)
+                TEXT_BUILDER.append("# Settings block ").append(i / 10).append('\n');
+
+            TEXT_BUILDER.append(key(i)).append('=');
+
+            switch (i % 4) {
+                case 0 -> TEXT_BUILDER.append("value-").append(i);
+                case 1 -> TEXT_BUILDER.append(i);
+                case 2 -> TEXT_BUILDER.append(i % 8 == 2 ? "true" : "false");
+                default -> TEXT_BUILDER.append("\"quoted # value ").append(i).append('"').append(" # comment");
+            }
+
+            TEXT_BUILDER.append('\n');
+        }
+
+        return TEXT_BUILDER.toString();
+    }
+
+    /**
+     * Writes a generated Environment File with the given number of settings to a temporary file.
+     * @param SIZE the number of settings to generate.
+     * @return the path of the generated file.
+     * @throws IOException if the file couldn't be written.
+     */
+    public static Path generate(final int SIZE) throws IOException {
+        final Path PATH = Files.createTempFile("dotenv-benchmark-" + SIZE + "-", ".env");
+        PATH.toFile().deleteOnExit();
+
+        Files.writeString(PATH, generateText(SIZE));
+        return PATH;
+    }
+
+    /**
+     * Gets the name of the generated setting at the given index.
+     * @param INDEX the index of the setting.
+     * @return the key of the setting.
+     */
+    public static String key(final int INDEX) {
+        return "SETTING_" + INDEX;
+    }
+
+    /**
+     * Finds the index of a generated setting of the given kind, where 1 is an integer and 2 is a boolean.
+     * @param SIZE the number of generated settings.
+     * @param KIND the remainder identifying the kind of value.
+     * @return the index of a setting of that kind near the middle of the file.
+     */
+    public static int indexOfKind(final int SIZE, final int KIND) {
+        return (SIZE / 2) - ((SIZE / 2) % 4) + KIND;
+    }
+}
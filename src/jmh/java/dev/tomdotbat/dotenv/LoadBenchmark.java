@@ -0,0 +1,81 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how quickly Environment Files of different sizes are read and parsed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadBenchmark {
+    @Setup
+    public void setup() throws IOException {
+        path = EnvironmentFiles.generate(size);
+        text = Files.readString(path);
+        config = new Configuration(path);
+
+        compiledConfig = new Configuration(path);
+        compiledConfig.setCompiledCacheEnabled(true);
+        compiledConfig.load();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path.resolveSibling(path.getFileName() + ".compiled"));
+    }
+
+    @Benchmark
+    public Configuration load() throws IOException {
+        config.load();
+        return config;
+    }
+
+    @Benchmark
+    public Configuration loadCompiled() throws IOException {
+        compiledConfig.load();
+        return compiledConfig;
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        EnvironmentReader.read(text, (key, value, comment, lineNumber) -> {
+            blackhole.consume(value);
+            return true;
+        });
+    }
+
+    @Param({"10", "1000", "40000"})
+    public int size;
+
+    private Path path;
+    private String text;
+    private Configuration config;
+    private Configuration compiledConfig;
+}
@@ -0,0 +1,94 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of the Configuration getters from a single thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+    @Setup
+    public void setup() throws IOException {
+        config = new Configuration(EnvironmentFiles.generate(SIZE));
+        config.load();
+
+        if (frozen) config.freeze();
+
+        stringKey = EnvironmentFiles.key(EnvironmentFiles.indexOfKind(SIZE, 0));
+        integerKey = EnvironmentFiles.key(EnvironmentFiles.indexOfKind(SIZE, 1));
+        booleanKey = EnvironmentFiles.key(EnvironmentFiles.indexOfKind(SIZE, 2));
+        integerHandle = Configuration.key(integerKey);
+    }
+
+    @Benchmark
+    public String getString() {
+        return config.getString(stringKey);
+    }
+
+    @Benchmark
+    public int getInteger() throws Exception {
+        return config.getInteger(integerKey);
+    }
+
+    @Benchmark
+    public int getIntegerByHandle() throws Exception {
+        return config.getInteger(integerHandle);
+    }
+
+    @Benchmark
+    public int getIntegerMissing() {
+        return config.getInteger(MISSING_KEY, -1);
+    }
+
+    @Benchmark
+    public boolean getBoolean() throws Exception {
+        return config.getBoolean(booleanKey);
+    }
+
+    @Benchmark
+    public boolean getBooleanMissing() {
+        return config.getBoolean(MISSING_KEY, false);
+    }
+
+    @Benchmark
+    public boolean keyEquals() {
+        return config.keyEquals(booleanKey, true);
+    }
+
+    @Param({"false", "true"})
+    public boolean frozen;
+
+    protected Configuration config;
+    protected String stringKey;
+    protected String integerKey;
+    protected String booleanKey;
+    protected ConfigurationKey integerHandle;
+
+    private static final int SIZE = 1000;
+    private static final String MISSING_KEY = "MISSING_SETTING";
+}
@@ -0,0 +1,64 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures saving a changed setting and loading the Environment File back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaveBenchmark {
+    @Setup
+    public void setup() throws IOException {
+        path = EnvironmentFiles.generate(size);
+        config = new Configuration(path);
+        config.load();
+    }
+
+    @Benchmark
+    public Configuration saveRoundTrip() throws IOException {
+        config.set(EnvironmentFiles.key(0), counter++);
+        config.save();
+        config.load();
+
+        return config;
+    }
+
+    @Benchmark
+    public Configuration saveUnchanged() throws IOException {
+        config.save();
+        return config;
+    }
+
+    @Param({"10", "1000", "40000"})
+    public int size;
+
+    private Path path;
+    private Configuration config;
+    private int counter;
+}
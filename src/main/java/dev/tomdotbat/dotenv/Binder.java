@@ -0,0 +1,244 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import dev.tomdotbat.dotenv.exception.MissingKeyException;
+import dev.tomdotbat.dotenv.exception.ValueFormatException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InaccessibleObjectException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies the settings of a Configuration into a record or bean, created with {@link Configuration#bind(Class)}.
+ * <p>
+ * A type is inspected once, when it is first bound, and its constructor and setters are kept as MethodHandles,
+ * so binding it again only reads the keys it declares through their {@link ConfigurationKey} slots.
+ * Property names are mapped to keys by splitting camel case with underscores, so {@code databaseUrl} reads {@code DATABASE_URL}.
+ * @param <T> the type being bound.
+ */
+/* package-private */ final class Binder<T> {
+    /**
+     * Inspects a record or bean, finding the keys it declares and how to set them.
+     * @param TYPE the type to bind.
+     * @throws IllegalArgumentException if the type isn't a record or bean, or has a record component of an unsupported type.
+     */
+    private Binder(final Class<T> TYPE) {
+        this.TYPE = TYPE;
+
+        try {
+            if (TYPE.isRecord()) {
+                final RecordComponent[] COMPONENTS = TYPE.getRecordComponents();
+                final Class<?>[] PARAMETER_TYPES = new Class<?>[COMPONENTS.length];
+                final Property[] PROPERTIES = new Property[COMPONENTS.length];
+
+                for (int i = 0; i < COMPONENTS.length; i++) {
+                    PARAMETER_TYPES[i] = COMPONENTS[i].getType();
+                    PROPERTIES[i] = new Property(COMPONENTS[i].getName(), PARAMETER_TYPES[i], null);
+                }
+
+                final Constructor<T> CONSTRUCTOR = TYPE.getDeclaredConstructor(PARAMETER_TYPES);
+                CONSTRUCTOR.setAccessible(true);
+
+                this.CONSTRUCTOR = LOOKUP.unreflectConstructor(CONSTRUCTOR)
+                        .asSpreader(Object[].class, COMPONENTS.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+                this.PROPERTIES = PROPERTIES;
+                this.RECORD = true;
+            }
+            else {
+                final Constructor<T> CONSTRUCTOR = TYPE.getDeclaredConstructor();
+                CONSTRUCTOR.setAccessible(true);
+
+                final List<Property> PROPERTIES = new ArrayList<>();
+                for (final Method METHOD: TYPE.getMethods()) {
+                    final String NAME = METHOD.getName();
+                    if (Modifier.isStatic(METHOD.getModifiers()) || METHOD.getParameterCount() != 1
+                            || NAME.length() <= 3 || !NAME.startsWith("set")) continue;
+
+                    //A bean may have setters that aren't settings, such as for a listener, which are left alone.
+                    if (!isSupported(METHOD.getParameterTypes()[0])) continue;
+
+                    METHOD.setAccessible(true);
+                    final MethodHandle SETTER = LOOKUP.unreflect(METHOD)
+                            .asType(MethodType.methodType(void.class, Object.class, Object.class));
+
+                    PROPERTIES.add(new Property(Character.toLowerCase(NAME.charAt(3)) + NAME.substring(4), METHOD.getParameterTypes()[0], SETTER));
+                }
+
+                this.CONSTRUCTOR = LOOKUP.unreflectConstructor(CONSTRUCTOR).asType(MethodType.methodType(Object.class));
+                this.PROPERTIES = PROPERTIES.toArray(new Property[0]);
+                this.RECORD = false;
+            }
+        }
+        catch (NoSuchMethodException ex) {
+            throw new IllegalArgumentException(TYPE.getName() + " must be a record or have a no-argument constructor to be bound.", ex);
+        }
+        catch (IllegalAccessException | SecurityException | InaccessibleObjectException ex) {
+            throw new IllegalArgumentException(TYPE.getName() + " can't be bound: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Gets the Binder for a type, inspecting the type the first time it is bound.
+     * @param type the record or bean to bind.
+     * @param <T> the type being bound.
+     * @return the type's Binder.
+     * @throws IllegalArgumentException if the type isn't a record or bean, or has a record component of an unsupported type.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Binder<T> of(Class<T> type) {
+        return (Binder<T>) BINDERS.get(type);
+    }
+
+    /**
+     * Creates an instance of the type from the settings in a Snapshot.
+     * A record's primitive components are required, as they have no value to fall back on,
+     * while any other property is left null, or unset on a bean so it keeps the value it was constructed with, when its key is missing.
+     * @param SNAPSHOT the Snapshot to read the settings from, so every property sees the same version of the Configuration.
+     * @param STACK_TRACES whether Exceptions for missing or invalid settings should have stack traces.
+     * @return the bound instance.
+     * @throws MissingKeyException if the key of a primitive record component couldn't be found.
+     * @throws ValueFormatException if a setting isn't in the right format for its property.
+     * @throws NumberFormatException if a setting isn't a valid number for its property.
+     */
+    public T bind(final Snapshot SNAPSHOT, final boolean STACK_TRACES) throws MissingKeyException, ValueFormatException {
+        try {
+            if (RECORD) {
+                final Object[] ARGUMENTS = new Object[PROPERTIES.length];
+                for (int i = 0; i < ARGUMENTS.length; i++)
+                    ARGUMENTS[i] = PROPERTIES[i].read(SNAPSHOT, STACK_TRACES);
+
+                return TYPE.cast(CONSTRUCTOR.invokeExact(ARGUMENTS));
+            }
+
+            final Object INSTANCE = CONSTRUCTOR.invokeExact();
+            for (final Property PROPERTY: PROPERTIES) {
+                final Object VALUE = PROPERTY.read(SNAPSHOT, STACK_TRACES);
+                if (VALUE != null) PROPERTY.SETTER.invokeExact(INSTANCE, VALUE);
+            }
+
+            return TYPE.cast(INSTANCE);
+        }
+        catch (MissingKeyException | ValueFormatException | RuntimeException | Error ex) {
+            throw ex;
+        }
+        catch (Throwable ex) {
+            throw new IllegalStateException("Couldn't bind " + TYPE.getName() + ".", ex);
+        }
+    }
+
+    /**
+     * Returns whether a property of a type can be bound.
+     * @param type the type of the property.
+     * @return true if the type is a String or has a parser.
+     */
+    private static boolean isSupported(Class<?> type) {
+        return type == String.class || PARSERS.containsKey(type);
+    }
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final ClassValue<Binder<?>> BINDERS = new ClassValue<>() {
+        @Override
+        protected Binder<?> computeValue(Class<?> type) {
+            return new Binder<>(type);
+        }
+    };
+
+    /**
+     * The parser used for each supported property type, a String property doesn't need one.
+     */
+    private static final Map<Class<?>, ValueParser<?, ?>> PARSERS = Map.ofEntries(
+            Map.entry(int.class, ValueParsers.INTEGER),
+            Map.entry(Integer.class, ValueParsers.INTEGER),
+            Map.entry(long.class, ValueParsers.LONG),
+            Map.entry(Long.class, ValueParsers.LONG),
+            Map.entry(double.class, ValueParsers.DOUBLE),
+            Map.entry(Double.class, ValueParsers.DOUBLE),
+            Map.entry(boolean.class, ValueParsers.BOOLEAN),
+            Map.entry(Boolean.class, ValueParsers.BOOLEAN),
+            Map.entry(Duration.class, ValueParsers.DURATION),
+            Map.entry(List.class, ValueParsers.LIST)
+    );
+
+    private final Class<T> TYPE;
+    private final MethodHandle CONSTRUCTOR;
+    private final Property[] PROPERTIES;
+    private final boolean RECORD;
+
+    /**
+     * A single property of a bound type, with the key it is read from.
+     */
+    private static final class Property {
+        /**
+         * Constructs a Property, finding the parser for its type.
+         * @param NAME the name of the property.
+         * @param TYPE the type of the property.
+         * @param SETTER the bean setter taking the instance and value, or null for a record component.
+         * @throws IllegalArgumentException if the property's type isn't supported.
+         */
+        @SuppressWarnings("unchecked")
+        private Property(final String NAME, final Class<?> TYPE, final MethodHandle SETTER) {
+            if (!isSupported(TYPE))
+                throw new IllegalArgumentException("The property \"" + NAME + "\" has the unsupported type " + TYPE.getName() + ".");
+
+            this.KEY = ConfigurationKey.of(ConfigurationKey.nameOf(NAME));
+            //Every parser either throws a ValueFormatException or an unchecked Exception.
+            this.PARSER = (ValueParser<?, ValueFormatException>) PARSERS.get(TYPE);
+            //A bean's setter can simply not be called, but a record component must be given a value.
+            this.REQUIRED = SETTER == null && TYPE.isPrimitive();
+            this.SETTER = SETTER;
+        }
+
+        /**
+         * Reads the property's value from a Snapshot.
+         * @param SNAPSHOT the Snapshot to read from.
+         * @param STACK_TRACES whether Exceptions for missing or invalid settings should have stack traces.
+         * @return the parsed value, or null if the key is missing.
+         * @throws MissingKeyException if the property is required and its key couldn't be found.
+         * @throws ValueFormatException if the setting isn't in the right format.
+         */
+        private Object read(final Snapshot SNAPSHOT, final boolean STACK_TRACES) throws MissingKeyException, ValueFormatException {
+            final Value VALUE = SNAPSHOT.get(KEY);
+
+            if (VALUE == null) {
+                if (REQUIRED)
+                    throw new MissingKeyException("The key \"" + KEY.getName() + "\" couldn't be found in the Configuration.", STACK_TRACES);
+
+                return null;
+            }
+
+            return PARSER != null ? VALUE.get(PARSER, STACK_TRACES) : VALUE.getString();
+        }
+
+        private final ConfigurationKey KEY;
+        private final ValueParser<?, ValueFormatException> PARSER;
+        private final boolean REQUIRED;
+        private final MethodHandle SETTER;
+    }
+}
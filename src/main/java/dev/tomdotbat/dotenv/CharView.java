@@ -0,0 +1,69 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+/**
+ * A reusable view over a region of a char array, so a parser can hand out text without copying it.
+ * The view changes whenever it is moved, so it must not be kept by whoever it's given to.
+ */
+/* package-private */ final class CharView implements CharSequence {
+    /**
+     * Moves the view to a region of a char array.
+     * @param array the array to view.
+     * @param start the start of the region, inclusive.
+     * @param end the end of the region, exclusive.
+     * @return this view.
+     */
+    public CharView set(char[] array, int start, int end) {
+        this.array = array;
+        this.start = start;
+        this.length = end - start;
+
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for length " + length + ".");
+
+        return array[start + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end)
+            throw new IndexOutOfBoundsException("Region " + start + " to " + end + " is out of bounds for length " + length + ".");
+
+        return new String(array, this.start + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(array, start, length);
+    }
+
+    private char[] array;
+    private int start;
+    private int length;
+}
@@ -0,0 +1,175 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads and writes the compiled binary copy of an Environment File's settings.
+ * <p>
+ * The compiled cache starts with a header identifying the source File by its size, modification time and CRC32C,
+ * followed by the number of settings, then a flag byte for each setting marking whether it is single-quoted,
+ * and its key and value as length-prefixed UTF-8 strings.
+ * It ends with a CRC32C of everything before it, so a truncated or corrupted cache is detected rather than trusted.
+ */
+/* package-private */ final class CompiledCache {
+    private CompiledCache() {}
+
+    /**
+     * Reads the settings from the compiled cache, if it is still valid for the source File.
+     * @param SOURCE the path of the Environment File.
+     * @param CACHE the path of the compiled cache.
+     * @param CONSUMER the consumer to pass each key-value pair to.
+     * @return the size of the source File in bytes if the settings were read,
+     *         or -1 if the cache is missing, stale or corrupt and the source must be parsed.
+     */
+    public static long read(final Path SOURCE, final Path CACHE, final EnvironmentParser.SettingConsumer CONSUMER) {
+        final String[] ENTRIES;
+        final BitSet LITERALS = new BitSet();
+        final long SOURCE_SIZE;
+
+        try (final FileChannel CHANNEL = FileChannel.open(CACHE, StandardOpenOption.READ)) {
+            final long CACHE_SIZE = CHANNEL.size();
+            if (CACHE_SIZE < HEADER_SIZE + Long.BYTES || CACHE_SIZE > Integer.MAX_VALUE) return -1;
+
+            final ByteBuffer BUFFER = CHANNEL.map(FileChannel.MapMode.READ_ONLY, 0, CACHE_SIZE);
+            if (BUFFER.getInt() != MAGIC || BUFFER.getInt() != VERSION) return -1;
+
+            SOURCE_SIZE = BUFFER.getLong();
+            final long SOURCE_MODIFIED_TIME = BUFFER.getLong();
+            final long SOURCE_CHECKSUM = BUFFER.getLong();
+
+            //Compare the cheap attributes first, only hashing the source when they match.
+            final BasicFileAttributes ATTRIBUTES = Files.readAttributes(SOURCE, BasicFileAttributes.class);
+            if (ATTRIBUTES.size() != SOURCE_SIZE || ATTRIBUTES.lastModifiedTime().toMillis() != SOURCE_MODIFIED_TIME) return -1;
+            if (checksumOf(SOURCE) != SOURCE_CHECKSUM) return -1;
+
+            final int BODY_END = (int) CACHE_SIZE - Long.BYTES;
+            final CRC32C CACHE_CHECKSUM = new CRC32C();
+            CACHE_CHECKSUM.update(BUFFER.duplicate().position(0).limit(BODY_END));
+            if (CACHE_CHECKSUM.getValue() != BUFFER.getLong(BODY_END)) return -1;
+
+            //Decode everything before passing any of it on, so a bad cache never delivers half its settings.
+            final int COUNT = BUFFER.getInt();
+            if (COUNT < 0 || COUNT > (BODY_END - HEADER_SIZE) / (Integer.BYTES * 2 + 1)) return -1;
+
+            ENTRIES = new String[COUNT * 2];
+            for (int i = 0; i < ENTRIES.length; i += 2) {
+                if (BUFFER.get() != 0) LITERALS.set(i / 2);
+
+                ENTRIES[i] = readString(BUFFER);
+                ENTRIES[i + 1] = readString(BUFFER);
+            }
+        }
+        catch (IOException | RuntimeException ex) {
+            return -1;
+        }
+
+        for (int i = 0; i < ENTRIES.length; i += 2)
+            CONSUMER.accept(ENTRIES[i], ENTRIES[i + 1], LITERALS.get(i / 2));
+
+        return SOURCE_SIZE;
+    }
+
+    /**
+     * Writes the compiled cache for a source File.
+     * @param CACHE the path of the compiled cache.
+     * @param SOURCE_SIZE the size of the source File when it was read.
+     * @param SOURCE_MODIFIED_TIME the modification time of the source File in milliseconds, taken before it was read.
+     * @param SOURCE_CHECKSUM the CRC32C of the bytes read from the source File.
+     * @param ENTRIES the settings read from the source File, as alternating keys and values.
+     * @param LITERALS the indexes of the settings whose values were single-quoted.
+     * @throws IOException if an error occurs when writing the cache.
+     */
+    public static void write(final Path CACHE, final long SOURCE_SIZE, final long SOURCE_MODIFIED_TIME, final long SOURCE_CHECKSUM,
+                             final List<String> ENTRIES, final BitSet LITERALS) throws IOException {
+        final byte[][] ENCODED = new byte[ENTRIES.size()][];
+        int size = HEADER_SIZE + Long.BYTES + ENCODED.length / 2;
+
+        for (int i = 0; i < ENCODED.length; i++) {
+            ENCODED[i] = ENTRIES.get(i).getBytes(StandardCharsets.UTF_8);
+            size += Integer.BYTES + ENCODED[i].length;
+        }
+
+        final ByteBuffer BUFFER = ByteBuffer.allocate(size)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(SOURCE_SIZE)
+                .putLong(SOURCE_MODIFIED_TIME)
+                .putLong(SOURCE_CHECKSUM)
+                .putInt(ENCODED.length / 2);
+
+        for (int i = 0; i < ENCODED.length; i += 2) {
+            BUFFER.put((byte) (LITERALS.get(i / 2) ? 1 : 0));
+            BUFFER.putInt(ENCODED[i].length).put(ENCODED[i]);
+            BUFFER.putInt(ENCODED[i + 1].length).put(ENCODED[i + 1]);
+        }
+
+        final CRC32C CACHE_CHECKSUM = new CRC32C();
+        CACHE_CHECKSUM.update(BUFFER.array(), 0, BUFFER.position());
+        BUFFER.putLong(CACHE_CHECKSUM.getValue()).flip();
+
+        EnvironmentFile.writeAtomically(CACHE, BUFFER);
+    }
+
+    /**
+     * Calculates the CRC32C of a File's contents by memory-mapping it.
+     * @param PATH the path of the File.
+     * @return the CRC32C of the File.
+     * @throws IOException if an error occurs when reading the File.
+     */
+    private static long checksumOf(final Path PATH) throws IOException {
+        final CRC32C CHECKSUM = new CRC32C();
+
+        try (final FileChannel CHANNEL = FileChannel.open(PATH, StandardOpenOption.READ)) {
+            CHECKSUM.update(CHANNEL.map(FileChannel.MapMode.READ_ONLY, 0, CHANNEL.size()));
+        }
+
+        return CHECKSUM.getValue();
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string from the buffer.
+     * @param BUFFER the buffer to read from.
+     * @return the decoded string.
+     */
+    private static String readString(final ByteBuffer BUFFER) {
+        final byte[] BYTES = new byte[BUFFER.getInt()];
+        BUFFER.get(BYTES);
+
+        return new String(BYTES, StandardCharsets.UTF_8);
+    }
+
+    private static final int MAGIC = 0x444F5445;
+    private static final int VERSION = 4;
+
+    /**
+     * The size of the magic number, version, source attributes and setting count.
+     */
+    private static final int HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES * 3 + Integer.BYTES;
+}
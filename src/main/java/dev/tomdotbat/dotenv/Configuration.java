@@ -19,22 +19,58 @@ package dev.tomdotbat.dotenv;
 
 import dev.tomdotbat.dotenv.exception.BooleanFormatException;
 import dev.tomdotbat.dotenv.exception.MissingKeyException;
+import dev.tomdotbat.dotenv.exception.SchemaViolationException;
+import dev.tomdotbat.dotenv.exception.ValueFormatException;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Represents the Environment Configuration of an Application.
+ * Reads never lock: the settings are an immutable snapshot behind a single volatile reference,
+ * which {@link #load()} and the setters replace in one atomic swap.
+ * Typed getters parse each value once and cache the result alongside it, until the key is set or reloaded.
+ * A Configuration may be layered over several Environment Files and the system environment, which are flattened
+ * into the snapshot when loaded rather than searched on every lookup.
+ * Values may reference other keys as {@code ${KEY}}. References are expanded when a value is first read and remembered
+ * until a key it depends on changes, at which point only the dependent values are expanded again.
+ * A reference names a key in the case it's written in, unless keys are {@linkplain #setCaseInsensitiveKeys(boolean) case-insensitive}.
+ * A Configuration that won't change again can be {@linkplain #freeze() frozen} into a compact immutable table.
  */
 public final class Configuration {
     /**
      * Creates a Configuration from the automatically located dotenv file.
+     * The File is located when it is first loaded, saved or watched rather than when the Configuration is created.
      */
     public Configuration() {
-        FILE = new EnvironmentFile(locateEnvironmentFile());
+        this(new EnvironmentFile());
     }
 
     /**
@@ -42,7 +78,7 @@ public final class Configuration {
      * @param file the Environment File.
      */
     public Configuration(File file) {
-        FILE = new EnvironmentFile(file);
+        this(new EnvironmentFile(file));
     }
 
     /**
@@ -50,7 +86,72 @@ public final class Configuration {
      * @param path the path of the Environment File.
      */
     public Configuration(Path path) {
-        FILE = new EnvironmentFile(path);
+        this(new EnvironmentFile(path));
+    }
+
+    /**
+     * Creates a Configuration from a given Environment File, interning the keys and values it loads.
+     * @param path the path of the Environment File.
+     * @param stringPool the pool to intern the keys and values in, which may be shared with other Configurations.
+     */
+    /* package-private */ Configuration(Path path, StringPool stringPool) {
+        this(new EnvironmentFile(path), stringPool);
+    }
+
+    /**
+     * Create a layered Configuration from the Files at the given Paths, optionally with the system environment above them.
+     * The layers are flattened into a single set of settings when loaded, so lookups cost the same however many there are.
+     * Values set in code take precedence over every layer, and Files other than the primary one may be missing.
+     * @param paths the paths of the Environment Files in order of precedence, highest first.
+     *              The last is the primary File, which is located first and written to by {@link #save()}.
+     * @param systemEnvironment whether the variables from {@link System#getenv()} take precedence over every File.
+     */
+    public Configuration(List<Path> paths, boolean systemEnvironment) {
+        if (paths.isEmpty())
+            throw new IllegalArgumentException("A Configuration needs at least one Environment File.");
+
+        final List<EnvironmentFile> FILES = new ArrayList<>();
+        for (final Path PATH: paths) FILES.add(new EnvironmentFile(PATH));
+
+        this.FILES = Collections.unmodifiableList(FILES);
+        FILE = FILES.get(FILES.size() - 1);
+        SYSTEM_ENVIRONMENT = systemEnvironment;
+        STRING_POOL = null;
+    }
+
+    /**
+     * Create a Configuration from a single Environment File.
+     * @param file the Environment File.
+     */
+    private Configuration(EnvironmentFile file) {
+        this(file, null);
+    }
+
+    /**
+     * Create a Configuration from a single Environment File.
+     * @param file the Environment File.
+     * @param stringPool the pool to intern the loaded keys and values in, or null to not intern them.
+     */
+    private Configuration(EnvironmentFile file, StringPool stringPool) {
+        FILES = List.of(file);
+        FILE = file;
+        SYSTEM_ENVIRONMENT = false;
+        STRING_POOL = stringPool;
+    }
+
+    /**
+     * Creates the conventional layered Configuration for a profile, which in order of precedence reads
+     * the system environment, then {@code .env.<profile>}, {@code .env.local} and finally {@code .env} from the given directory.
+     * @param directory the directory holding the Environment Files.
+     * @param profile the name of the profile, such as production.
+     * @return the layered Configuration, which still needs to be loaded.
+     */
+    public static Configuration layered(Path directory, String profile) {
+        return new Configuration(List.of(
+                directory.resolve(".env." + profile),
+                directory.resolve(".env.local"),
+                directory.resolve(".env")
+        ), true);
     }
 
     /**
@@ -59,7 +160,10 @@ public final class Configuration {
      * @return the given key's value, or null if it doesn't exist.
      */
     public String getString(String key) {
-        return SETTINGS.get(key);
+        final Value VALUE = getSnapshot().get(key);
+        recordStringLookup(VALUE, false);
+
+        return VALUE != null ? VALUE.getString() : null;
     }
 
     /**
@@ -69,8 +173,10 @@ public final class Configuration {
      * @return the given key's value, or the fallback if it couldn't be found.
      */
     public String getString(String key, String fallback) {
-        final String VALUE = SETTINGS.get(key);
-        return VALUE != null ? VALUE : fallback;
+        final Value VALUE = getSnapshot().get(key);
+        recordStringLookup(VALUE, true);
+
+        return VALUE != null ? VALUE.getString() : fallback;
     }
 
     /**
@@ -81,13 +187,9 @@ public final class Configuration {
      * @throws MissingKeyException if the key couldn't be found.
      */
     public int getInteger(String key) throws NumberFormatException, MissingKeyException {
-        final String VALUE = SETTINGS.get(key);
-        if (VALUE == null)
-            throw new MissingKeyException("The key \"" + key + "\" couldn't be found in the Configuration.");
-
-        return Integer.parseInt(SETTINGS.get(key));
-
+        return getParsed(key, ValueParsers.INTEGER);
     }
+
     /**
      * Gets the value of a key from the Configuration as an int, returns the fallback if it doesn't exist or isn't a valid int.
      * @param key the key to get the value of.
@@ -95,12 +197,8 @@ public final class Configuration {
      * @return the given key's value as an int, or the fallback if it couldn't be found or isn't a valid int.
      */
     public int getInteger(String key, int fallback) {
-        try {
-            return getInteger(key);
-        }
-        catch (Exception ex) {
-            return fallback;
-        }
+        final Integer VALUE = findParsed(key, ValueParsers.INTEGER);
+        return VALUE != null ? VALUE : fallback;
     }
 
     /**
@@ -111,11 +209,7 @@ public final class Configuration {
      * @throws MissingKeyException if the key couldn't be found.
      */
     public boolean getBoolean(String key) throws BooleanFormatException, MissingKeyException {
-        final String VALUE = SETTINGS.get(key);
-        if (VALUE == null)
-            throw new MissingKeyException("The key \"" + key + "\" couldn't be found in the Configuration.");
-
-        return parseBoolean(VALUE);
+        return getParsed(key, ValueParsers.BOOLEAN);
     }
 
     /**
@@ -125,173 +219,1614 @@ public final class Configuration {
      * @return the given key's value as a boolean, or the fallback if it couldn't be found or isn't a valid boolean.
      */
     public boolean getBoolean(String key, boolean fallback) {
-        try {
-            return getBoolean(key);
-        }
-        catch (Exception ex) {
-            return fallback;
+        final Boolean VALUE = findParsed(key, ValueParsers.BOOLEAN);
+        return VALUE != null ? VALUE : fallback;
+    }
+
+    /**
+     * Gets the value of a key from the Configuration as a long.
+     * @param key the key to get the value of.
+     * @return the given key's value as a long.
+     * @throws NumberFormatException if the key isn't a valid long.
+     * @throws MissingKeyException if the key couldn't be found.
+     */
+    public long getLong(String key) throws NumberFormatException, MissingKeyException {
+        return getParsed(key, ValueParsers.LONG);
+    }
+
+    /**
+     * Gets the value of a key from the Configuration as a long, returns the fallback if it doesn't exist or isn't a valid long.
+     * @param key the key to get the value of.
+     * @param fallback the fallback to use if the key isn't in the Configuration or isn't a valid long.
+     * @return the given key's value as a long, or the fallback if it couldn't be found or isn't a valid long.
+     */
+    public long getLong(String key, long fallback) {
+        final Long VALUE = findParsed(key, ValueParsers.LONG);
+        return VALUE != null ? VALUE : fallback;
+    }
+
+    /**
+     * Gets the value of a key from the Configuration as a double.
+     * @param key the key to get the value of.
+     * @return the given key's value as a double.
+     * @throws NumberFormatException if the key isn't a valid double.
+     * @throws MissingKeyException if the key couldn't be found.
+     */
+    public double getDouble(String key) throws NumberFormatException, MissingKeyException {
+        return getParsed(key, ValueParsers.DOUBLE);
+    }
+
+    /**
+     * Gets the value of a key from the Configuration as a double, returns the fallback if it doesn't exist or isn't a valid double.
+     * @param key the key to get the value of.
+     * @param fallback the fallback to use if the key isn't in the Configuration or isn't a valid double.
+     * @return the given key's value as a double, or the fallback if it couldn't be found or isn't a valid double.
+     */
+    public double getDouble(String key, double fallback) {
+        final Double VALUE = findParsed(key, ValueParsers.DOUBLE);
+        return VALUE != null ? VALUE : fallback;
+    }
+
+    /**
+     * Gets the value of a key from the Configuration as a Duration.
+     * Durations are written in ISO-8601 format (PT30S) or as a whole number followed by ns, us, ms, s, m, h or d,
+     * a number without a unit is taken as milliseconds.
+     * @param key the key to get the value of.
+     * @return the given key's value as a Duration.
+     * @throws ValueFormatException if the key isn't a valid Duration.
+     * @throws MissingKeyException if the key couldn't be found.
+     */
+    public Duration getDuration(String key) throws ValueFormatException, MissingKeyException {
+        return getParsed(key, ValueParsers.DURATION);
+    }
+
+    /**
+     * Gets the value of a key from the Configuration as a Duration, returns the fallback if it doesn't exist or isn't a valid Duration.
+     * @param key the key to get the value of.
+     * @param fallback the fallback to use if the key isn't in the Configuration or isn't a valid Duration.
+     * @return the given key's value as a Duration, or the fallback if it couldn't be found or isn't a valid Duration.
+     */
+    public Duration getDuration(String key, Duration fallback) {
+        final Duration VALUE = findParsed(key, ValueParsers.DURATION);
+        return VALUE != null ? VALUE : fallback;
+    }
+
+    /**
+     * Gets the value of a key from the Configuration as a number of bytes.
+     * Sizes are written as a whole number optionally followed by B, K, M, G or T, which are binary multiples.
+     * @param key the key to get the value of.
+     * @return the given key's value in bytes.
+     * @throws ValueFormatException if the key isn't a valid byte size.
+     * @throws MissingKeyException if the key couldn't be found.
+     */
+    public long getByteSize(String key) throws ValueFormatException, MissingKeyException {
+        return getParsed(key, ValueParsers.BYTE_SIZE);
+    }
+
+    /**
+     * Gets the value of a key from the Configuration as a number of bytes, returns the fallback if it doesn't exist or isn't a valid byte size.
+     * @param key the key to get the value of.
+     * @param fallback the fallback to use if the key isn't in the Configuration or isn't a valid byte size.
+     * @return the given key's value in bytes, or the fallback if it couldn't be found or isn't a valid byte size.
+     */
+    public long getByteSize(String key, long fallback) {
+        final Long VALUE = findParsed(key, ValueParsers.BYTE_SIZE);
+        return VALUE != null ? VALUE : fallback;
+    }
+
+    /**
+     * Gets the value of a key from the Configuration as a comma-separated list, with each element trimmed and empty elements skipped.
+     * @param key the key to get the value of.
+     * @return the given key's value as an unmodifiable list.
+     * @throws MissingKeyException if the key couldn't be found.
+     */
+    public List<String> getList(String key) throws MissingKeyException {
+        return getParsed(key, ValueParsers.LIST);
+    }
+
+    /**
+     * Gets the value of a key from the Configuration as a comma-separated list, returns the fallback if it doesn't exist.
+     * @param key the key to get the value of.
+     * @param fallback the fallback to use if the key isn't in the Configuration.
+     * @return the given key's value as an unmodifiable list, or the fallback if it couldn't be found.
+     */
+    public List<String> getList(String key, List<String> fallback) {
+        final List<String> VALUE = findParsed(key, ValueParsers.LIST);
+        return VALUE != null ? VALUE : fallback;
+    }
+
+    /**
+     * Finds the value of a key in the Configuration.
+     * @param key the key to find the value of.
+     * @return the given key's value, or an empty Optional if it doesn't exist.
+     */
+    public Optional<String> findString(String key) {
+        return Optional.ofNullable(getString(key));
+    }
+
+    /**
+     * Finds the value of a key in the Configuration as an int, without throwing if it is missing or invalid.
+     * @param key the key to find the value of.
+     * @return the given key's value as an int, or an empty OptionalInt if it doesn't exist or isn't a valid int.
+     */
+    public OptionalInt findInteger(String key) {
+        final Integer VALUE = findParsed(key, ValueParsers.INTEGER);
+        return VALUE != null ? OptionalInt.of(VALUE) : OptionalInt.empty();
+    }
+
+    /**
+     * Finds the value of a key in the Configuration as a long, without throwing if it is missing or invalid.
+     * @param key the key to find the value of.
+     * @return the given key's value as a long, or an empty OptionalLong if it doesn't exist or isn't a valid long.
+     */
+    public OptionalLong findLong(String key) {
+        final Long VALUE = findParsed(key, ValueParsers.LONG);
+        return VALUE != null ? OptionalLong.of(VALUE) : OptionalLong.empty();
+    }
+
+    /**
+     * Finds the value of a key in the Configuration as a double, without throwing if it is missing or invalid.
+     * @param key the key to find the value of.
+     * @return the given key's value as a double, or an empty OptionalDouble if it doesn't exist or isn't a valid double.
+     */
+    public OptionalDouble findDouble(String key) {
+        final Double VALUE = findParsed(key, ValueParsers.DOUBLE);
+        return VALUE != null ? OptionalDouble.of(VALUE) : OptionalDouble.empty();
+    }
+
+    /**
+     * Finds the value of a key in the Configuration as a boolean, without throwing if it is missing or invalid.
+     * @param key the key to find the value of.
+     * @return the given key's value as a boolean, or an empty Optional if it doesn't exist or isn't a valid boolean.
+     */
+    public Optional<Boolean> findBoolean(String key) {
+        return Optional.ofNullable(findParsed(key, ValueParsers.BOOLEAN));
+    }
+
+    /**
+     * Finds the value of a key in the Configuration as a Duration, without throwing if it is missing or invalid.
+     * @param key the key to find the value of.
+     * @return the given key's value as a Duration, or an empty Optional if it doesn't exist or isn't a valid Duration.
+     */
+    public Optional<Duration> findDuration(String key) {
+        return Optional.ofNullable(findParsed(key, ValueParsers.DURATION));
+    }
+
+    /**
+     * Finds the value of a key in the Configuration as a number of bytes, without throwing if it is missing or invalid.
+     * @param key the key to find the value of.
+     * @return the given key's value in bytes, or an empty OptionalLong if it doesn't exist or isn't a valid byte size.
+     */
+    public OptionalLong findByteSize(String key) {
+        final Long VALUE = findParsed(key, ValueParsers.BYTE_SIZE);
+        return VALUE != null ? OptionalLong.of(VALUE) : OptionalLong.empty();
+    }
+
+    /**
+     * Sets whether the Exceptions thrown by the getters for missing or invalid keys have stack traces.
+     * Disabling stack traces makes those Exceptions far cheaper to create, for callers that rely on them for control flow.
+     * @param enabled true to fill in stack traces, which is the default.
+     */
+    public void setStackTracesEnabled(boolean enabled) {
+        stackTraces = enabled;
+    }
+
+    /**
+     * Sets the metrics to record the Configuration's lookups, loads, reloads and saves with.
+     * While the metrics are {@link ConfigurationMetrics#NONE}, which they are by default, nothing is measured.
+     * Loads, reloads and saves are also recorded as JDK Flight Recorder events, whatever the metrics.
+     * @param metrics the metrics to record with.
+     */
+    public void setMetrics(ConfigurationMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * Sets whether keys are case-insensitive. Keys are always upper-cased when loaded from an Environment File,
+     * and while keys are case-insensitive the getters find them whatever case they're given in,
+     * without creating an upper-cased copy of the key. Setting a key updates the existing key that matches it ignoring case,
+     * or adds it upper-cased, so it is saved under the same key that a load would produce.
+     * @param enabled true to look up and set keys ignoring case.
+     * @throws IllegalArgumentException if looking keys up in the new mode would make a key refer back to itself through its references,
+     *         in which case the mode isn't changed.
+     */
+    public void setCaseInsensitiveKeys(boolean enabled) {
+        synchronized (WRITE_LOCK) {
+            if (caseInsensitiveKeys == enabled) return;
+
+            //Index the published settings again for the new mode, unless they haven't been loaded yet.
+            if (snapshot != PENDING_LOAD) {
+                //References may now find different keys, so every value with them must be expanded again.
+                final Map<String, Value> VALUES = new HashMap<>(snapshot.getValues());
+                VALUES.replaceAll((key, value) -> value.copy());
+
+                final Map<String, Value> SETTINGS = frozen ? new FrozenTable(VALUES, enabled) : PersistentMap.of(VALUES, enabled);
+                final Snapshot SNAPSHOT = new Snapshot(SETTINGS, enabled);
+
+                //Likewise every reference must be checked again.
+                SNAPSHOT.checkReferences(SETTINGS.keySet(), false);
+                snapshot = SNAPSHOT;
+                dependencies = new DependencyGraph(SETTINGS, enabled);
+            }
+
+            caseInsensitiveKeys = enabled;
         }
     }
 
     /**
-     * Sets the value of a String key in the Configuration.
-     * @param key the key to set the value of
-     * @param value the new value of the key.
-     * @return the key's previous value, null if it didn't have one.
+     * Sets the key used to decrypt values written as {@code enc:} followed by their AES-GCM ciphertext,
+     * reading it from a file holding a Base64 encoded 128, 192 or 256-bit AES key.
+     * Each encrypted value is only decrypted the first time it is read, and saving writes the ciphertext back unchanged.
+     * The key only applies to settings loaded or set after it, and without a key, values starting with {@code enc:} are read as they are.
+     * @param keyFile the path of the keyfile.
+     * @throws IOException if an error occurs when reading the keyfile.
+     * @throws IllegalArgumentException if the keyfile doesn't hold a valid key.
+     * @see #encrypt(String)
      */
-    public String set(String key, String value) {
-        return SETTINGS.put(key, value);
+    public void setEncryptionKey(Path keyFile) throws IOException {
+        cipher = ValueCipher.fromKeyFile(keyFile);
     }
 
     /**
-     * Sets the value of an integer key in the Configuration.
-     * @param key the key to set the value of
-     * @param value the new value of the key.
-     * @return the key's previous value, null if it didn't have one.
+     * Sets the key used to decrypt values written as {@code enc:} followed by their AES-GCM ciphertext,
+     * reading it from an environment variable holding a Base64 encoded 128, 192 or 256-bit AES key.
+     * Each encrypted value is only decrypted the first time it is read, and saving writes the ciphertext back unchanged.
+     * The key only applies to settings loaded or set after it, and without a key, values starting with {@code enc:} are read as they are.
+     * @param variable the name of the environment variable.
+     * @throws IllegalArgumentException if the variable isn't set or doesn't hold a valid key.
+     * @see #encrypt(String)
      */
-    public String set(String key, int value) {
-        return set(key, String.valueOf(value));
+    public void setEncryptionKeyFromEnvironment(String variable) {
+        cipher = ValueCipher.fromEnvironment(variable);
     }
 
     /**
-     * Sets the value of a boolean key in the Configuration.
-     * @param key the key to set the value of
-     * @param value the new value of the key.
-     * @return the key's previous value, null if it didn't have one.
+     * Encrypts a value with the Configuration's key, ready to be set or written to an Environment File.
+     * @param value the value to encrypt.
+     * @return the encrypted value, starting with {@code enc:}.
+     * @throws IllegalStateException if no encryption key has been set.
      */
-    public String set(String key, boolean value) {
-        return set(key, value ? "true" : "false");
+    public String encrypt(String value) {
+        final ValueCipher CIPHER = cipher;
+        if (CIPHER == null)
+            throw new IllegalStateException("An encryption key must be set before values can be encrypted.");
+
+        return CIPHER.encrypt(value);
     }
 
     /**
-     * Returns whether the value of the given String key is the same as the given value.
-     * @param key the key to check the value of.
-     * @param value the value to check against the key.
-     * @param fallback the default state if the key doesn't have a value.
-     * @return true if the key's value is the same as the value given.
+     * Sets the schema that the settings are checked against whenever they're loaded or changed,
+     * taking effect from the next load. Every declared value is converted to its type as it is checked,
+     * and the default values of the schema are used for keys that no layer sets.
+     * @param schema the schema to check the settings against, or null to stop checking them.
      */
-    public boolean keyEquals(String key, String value, boolean fallback) {
-        final String VALUE = SETTINGS.get(key);
-        if (VALUE == null) return fallback;
-        return VALUE.equals(value);
+    public void setSchema(ConfigurationSchema schema) {
+        this.schema = schema;
     }
 
     /**
-     * Returns whether the value of the given String key is the same as the given value.
-     * @param key the key to check the value of.
-     * @param value the value to check against the key.
-     * @return true if the key's value is the same as the value given, false if the key doesn't exist.
+     * Sets whether a reference to a key that doesn't exist is an error, rather than being expanded to nothing.
+     * While enabled, settings that reference a missing key are rejected when they're loaded or changed, taking effect from the next load.
+     * References to keys can always be written literally by doubling the dollar sign, as {@code $${KEY}},
+     * or by single-quoting the whole value.
+     * @param enabled true to reject references to keys that don't exist.
      */
-    public boolean keyEquals(String key, String value) {
-        return keyEquals(key, value, false);
+    public void setStrictReferences(boolean enabled) {
+        strictReferences = enabled;
     }
 
     /**
-     * Returns whether the value of the given integer key is the same as the given value.
-     * @param key the key to check the value of.
-     * @param value the value to check against the key.
-     * @param fallback the default state if the key doesn't have a value.
-     * @return true if the key's value is the same as the value given.
+     * Gets a reusable handle to a key, to be held in a static final field and passed to the getters in place of the key's name.
+     * Reads through a handle skip hashing the key, but still see the latest value after a load or set.
+     * @param name the name of the key.
+     * @return the handle for the key, the same instance is returned for every call with the same name.
      */
-    public boolean keyEquals(String key, int value, boolean fallback) {
-        return keyEquals(key, String.valueOf(value), fallback);
+    public static ConfigurationKey key(String name) {
+        return ConfigurationKey.of(name);
     }
 
     /**
-     * Returns whether the value of the given integer key is the same as the given value.
-     * @param key the key to check the value of.
-     * @param value the value to check against the key.
-     * @return true if the key's value is the same as the value given, false if the key doesn't exist.
+     * Gets the value of a key from the Configuration through its handle.
+     * @param key the handle of the key to get the value of.
+     * @return the given key's value, or null if it doesn't exist.
      */
-    public boolean keyEquals(String key, int value) {
-        return keyEquals(key, value, false);
+    public String getString(ConfigurationKey key) {
+        final Value VALUE = getSnapshot().get(key);
+        recordStringLookup(VALUE, false);
+
+        return VALUE != null ? VALUE.getString() : null;
     }
 
     /**
-     * Returns whether the value of the given boolean key is the same as the given value.
-     * @param key the key to check the value of.
-     * @param value the value to check against the key.
-     * @param fallback the default state if the key doesn't have a value.
-     * @return true if the key's value is the same as the value given.
+     * Gets the value of a key from the Configuration through its handle, returns the fallback if it doesn't exist.
+     * @param key the handle of the key to get the value of.
+     * @param fallback the fallback to use if the key isn't in the Configuration.
+     * @return the given key's value, or the fallback if it couldn't be found.
      */
-    public boolean keyEquals(String key, boolean value, boolean fallback) {
-        final String VALUE = SETTINGS.get(key);
-        if (VALUE == null) return fallback;
-        return VALUE.equalsIgnoreCase(String.valueOf(value));
+    public String getString(ConfigurationKey key, String fallback) {
+        final Value VALUE = getSnapshot().get(key);
+        recordStringLookup(VALUE, true);
+
+        return VALUE != null ? VALUE.getString() : fallback;
     }
 
     /**
-     * Returns whether the value of the given boolean key is the same as the given value.
-     * @param key the key to check the value of.
-     * @param value the value to check against the key.
-     * @return true if the key's value is the same as the value given, false if the key doesn't exist.
+     * Gets the value of a key from the Configuration as an int, through its handle.
+     * @param key the handle of the key to get the value of.
+     * @return the given key's value as an int.
+     * @throws NumberFormatException if the key isn't a valid int.
+     * @throws MissingKeyException if the key couldn't be found.
      */
-    public boolean keyEquals(String key, boolean value) {
-        return keyEquals(key, value, false);
+    public int getInteger(ConfigurationKey key) throws NumberFormatException, MissingKeyException {
+        return getParsed(key, ValueParsers.INTEGER);
     }
 
     /**
-     * Gets all keys from the Configuration.
-     * @return every key in the Configuration.
+     * Gets the value of a key from the Configuration as an int through its handle, returns the fallback if it doesn't exist or isn't a valid int.
+     * @param key the handle of the key to get the value of.
+     * @param fallback the fallback to use if the key isn't in the Configuration or isn't a valid int.
+     * @return the given key's value as an int, or the fallback if it couldn't be found or isn't a valid int.
      */
-    public String[] getKeys() {
-        return SETTINGS.keySet().toArray(new String[0]);
+    public int getInteger(ConfigurationKey key, int fallback) {
+        final Integer VALUE = findParsed(key, ValueParsers.INTEGER);
+        return VALUE != null ? VALUE : fallback;
     }
 
     /**
-     * Loads the settings from the Environment File.
-     * @throws IOException if an error occurs when reading the file.
+     * Gets the value of a key from the Configuration as a long, through its handle.
+     * @param key the handle of the key to get the value of.
+     * @return the given key's value as a long.
+     * @throws NumberFormatException if the key isn't a valid long.
+     * @throws MissingKeyException if the key couldn't be found.
      */
-    public void load() throws IOException {
-        SETTINGS.clear();
-        SETTINGS.putAll(FILE.load());
+    public long getLong(ConfigurationKey key) throws NumberFormatException, MissingKeyException {
+        return getParsed(key, ValueParsers.LONG);
     }
 
     /**
-     * Saves the settings to the Environment File.
-     * @throws IOException if an error occurs when writing to the file.
+     * Gets the value of a key from the Configuration as a long through its handle, returns the fallback if it doesn't exist or isn't a valid long.
+     * @param key the handle of the key to get the value of.
+     * @param fallback the fallback to use if the key isn't in the Configuration or isn't a valid long.
+     * @return the given key's value as a long, or the fallback if it couldn't be found or isn't a valid long.
      */
-    public void save() throws IOException {
-        FILE.save(SETTINGS);
+    public long getLong(ConfigurationKey key, long fallback) {
+        final Long VALUE = findParsed(key, ValueParsers.LONG);
+        return VALUE != null ? VALUE : fallback;
     }
 
-    private final EnvironmentFile FILE;
-    private final Map<String, String> SETTINGS = new HashMap<>();
+    /**
+     * Gets the value of a key from the Configuration as a double, through its handle.
+     * @param key the handle of the key to get the value of.
+     * @return the given key's value as a double.
+     * @throws NumberFormatException if the key isn't a valid double.
+     * @throws MissingKeyException if the key couldn't be found.
+     */
+    public double getDouble(ConfigurationKey key) throws NumberFormatException, MissingKeyException {
+        return getParsed(key, ValueParsers.DOUBLE);
+    }
+
+    /**
+     * Gets the value of a key from the Configuration as a double through its handle, returns the fallback if it doesn't exist or isn't a valid double.
+     * @param key the handle of the key to get the value of.
+     * @param fallback the fallback to use if the key isn't in the Configuration or isn't a valid double.
+     * @return the given key's value as a double, or the fallback if it couldn't be found or isn't a valid double.
+     */
+    public double getDouble(ConfigurationKey key, double fallback) {
+        final Double VALUE = findParsed(key, ValueParsers.DOUBLE);
+        return VALUE != null ? VALUE : fallback;
+    }
 
     /**
-     * Locates the Environment File, firstly by looking in the working directory, then working up until it is found or the limit is reached.
-     * If no Environment File is found, it will attempt to create one in the working directory.
-     * @return the Environment File.
+     * Gets the value of a key from the Configuration as a boolean, through its handle.
+     * @param key the handle of the key to get the value of.
+     * @return the given key's value as a boolean.
+     * @throws BooleanFormatException if the key isn't a valid boolean.
+     * @throws MissingKeyException if the key couldn't be found.
      */
-    private Path locateEnvironmentFile() {
-        File file = new File(".env");
-        if (file.exists()) return file.toPath();
+    public boolean getBoolean(ConfigurationKey key) throws BooleanFormatException, MissingKeyException {
+        return getParsed(key, ValueParsers.BOOLEAN);
+    }
 
-        for (int i = 1; !file.exists() && i < 3; i++)
-            file = new File("../".repeat(i) + ".env");
+    /**
+     * Gets the value of a key from the Configuration as a boolean through its handle, returns the fallback if it doesn't exist or isn't a valid boolean.
+     * @param key the handle of the key to get the value of.
+     * @param fallback the fallback to use if the key isn't in the Configuration or isn't a valid boolean.
+     * @return the given key's value as a boolean, or the fallback if it couldn't be found or isn't a valid boolean.
+     */
+    public boolean getBoolean(ConfigurationKey key, boolean fallback) {
+        final Boolean VALUE = findParsed(key, ValueParsers.BOOLEAN);
+        return VALUE != null ? VALUE : fallback;
+    }
 
-        if (file.exists()) return file.toPath();
+    /**
+     * Gets the value of a key from the Configuration as a Duration, through its handle.
+     * @param key the handle of the key to get the value of.
+     * @return the given key's value as a Duration.
+     * @throws ValueFormatException if the key isn't a valid Duration.
+     * @throws MissingKeyException if the key couldn't be found.
+     */
+    public Duration getDuration(ConfigurationKey key) throws ValueFormatException, MissingKeyException {
+        return getParsed(key, ValueParsers.DURATION);
+    }
 
-        file = new File(".env");
+    /**
+     * Gets the value of a key from the Configuration as a Duration through its handle, returns the fallback if it doesn't exist or isn't a valid Duration.
+     * @param key the handle of the key to get the value of.
+     * @param fallback the fallback to use if the key isn't in the Configuration or isn't a valid Duration.
+     * @return the given key's value as a Duration, or the fallback if it couldn't be found or isn't a valid Duration.
+     */
+    public Duration getDuration(ConfigurationKey key, Duration fallback) {
+        final Duration VALUE = findParsed(key, ValueParsers.DURATION);
+        return VALUE != null ? VALUE : fallback;
+    }
 
-        try {
-            file.createNewFile();
+    /**
+     * Gets the value of a key from the Configuration as a number of bytes, through its handle.
+     * @param key the handle of the key to get the value of.
+     * @return the given key's value as a number of bytes.
+     * @throws ValueFormatException if the key isn't a valid byte size.
+     * @throws MissingKeyException if the key couldn't be found.
+     */
+    public long getByteSize(ConfigurationKey key) throws ValueFormatException, MissingKeyException {
+        return getParsed(key, ValueParsers.BYTE_SIZE);
+    }
+
+    /**
+     * Gets the value of a key from the Configuration as a number of bytes through its handle, returns the fallback if it doesn't exist or isn't a valid byte size.
+     * @param key the handle of the key to get the value of.
+     * @param fallback the fallback to use if the key isn't in the Configuration or isn't a valid byte size.
+     * @return the given key's value as a number of bytes, or the fallback if it couldn't be found or isn't a valid byte size.
+     */
+    public long getByteSize(ConfigurationKey key, long fallback) {
+        final Long VALUE = findParsed(key, ValueParsers.BYTE_SIZE);
+        return VALUE != null ? VALUE : fallback;
+    }
+
+    /**
+     * Gets the value of a key from the Configuration as a comma-separated list, through its handle.
+     * @param key the handle of the key to get the value of.
+     * @return the given key's value as a comma-separated list.
+     * @throws MissingKeyException if the key couldn't be found.
+     */
+    public List<String> getList(ConfigurationKey key) throws MissingKeyException {
+        return getParsed(key, ValueParsers.LIST);
+    }
+
+    /**
+     * Gets the value of a key from the Configuration as a comma-separated list through its handle, returns the fallback if it doesn't exist.
+     * @param key the handle of the key to get the value of.
+     * @param fallback the fallback to use if the key isn't in the Configuration.
+     * @return the given key's value as a comma-separated list, or the fallback if it couldn't be found.
+     */
+    public List<String> getList(ConfigurationKey key, List<String> fallback) {
+        final List<String> VALUE = findParsed(key, ValueParsers.LIST);
+        return VALUE != null ? VALUE : fallback;
+    }
+
+    /**
+     * Sets the value of a String key in the Configuration.
+     * @param key the key to set the value of
+     * @param value the new value of the key.
+     * @return the key's previous value, null if it didn't have one.
+     * @throws NullPointerException if the value is null.
+     * @throws IllegalArgumentException if the new value would make a key refer back to itself through its references,
+     *         refers to a key that doesn't exist while references are strict, or couldn't be saved to an Environment File
+     *         because it holds a line break, in which case nothing is changed.
+     * @throws SchemaViolationException if the new value doesn't match the schema, in which case nothing is changed.
+     */
+    public String set(String key, String value) {
+        Objects.requireNonNull(value, "The value of a key can't be null.");
+        return applyUpdates(Collections.singletonMap(key, value)).get(key);
+    }
+
+    /**
+     * Applies a group of changes to the Configuration as a single update.
+     * Readers see either none of the changes or all of them, and listeners are notified once with every changed key.
+     * @param changes a function that sets the keys to change on the batch it is given.
+     * @throws IllegalArgumentException if the changes would make a key refer back to itself through its references,
+     *         refer to a key that doesn't exist while references are strict, or couldn't be saved to an Environment File
+     *         because a value holds a line break, in which case none of them are applied.
+     * @throws SchemaViolationException if any of the changes don't match the schema, in which case none of them are applied.
+     */
+    public void batch(Consumer<ConfigurationBatch> changes) {
+        final ConfigurationBatch BATCH = new ConfigurationBatch();
+        changes.accept(BATCH);
+
+        if (!BATCH.getUpdates().isEmpty())
+            applyUpdates(BATCH.getUpdates());
+    }
+
+    /**
+     * Sets the value of an integer key in the Configuration.
+     * @param key the key to set the value of
+     * @param value the new value of the key.
+     * @return the key's previous value, null if it didn't have one.
+     */
+    public String set(String key, int value) {
+        return set(key, String.valueOf(value));
+    }
+
+    /**
+     * Sets the value of a boolean key in the Configuration.
+     * @param key the key to set the value of
+     * @param value the new value of the key.
+     * @return the key's previous value, null if it didn't have one.
+     */
+    public String set(String key, boolean value) {
+        return set(key, value ? "true" : "false");
+    }
+
+    /**
+     * Returns whether the value of the given String key is the same as the given value.
+     * @param key the key to check the value of.
+     * @param value the value to check against the key.
+     * @param fallback the default state if the key doesn't have a value.
+     * @return true if the key's value is the same as the value given.
+     */
+    public boolean keyEquals(String key, String value, boolean fallback) {
+        final Value VALUE = getSnapshot().get(key);
+        if (VALUE == null) return fallback;
+        return VALUE.getString().equals(value);
+    }
+
+    /**
+     * Returns whether the value of the given String key is the same as the given value.
+     * @param key the key to check the value of.
+     * @param value the value to check against the key.
+     * @return true if the key's value is the same as the value given, false if the key doesn't exist.
+     */
+    public boolean keyEquals(String key, String value) {
+        return keyEquals(key, value, false);
+    }
+
+    /**
+     * Returns whether the value of the given integer key is the same as the given value.
+     * @param key the key to check the value of.
+     * @param value the value to check against the key.
+     * @param fallback the default state if the key doesn't have a value.
+     * @return true if the key's value is the same as the value given.
+     */
+    public boolean keyEquals(String key, int value, boolean fallback) {
+        return keyEquals(key, String.valueOf(value), fallback);
+    }
+
+    /**
+     * Returns whether the value of the given integer key is the same as the given value.
+     * @param key the key to check the value of.
+     * @param value the value to check against the key.
+     * @return true if the key's value is the same as the value given, false if the key doesn't exist.
+     */
+    public boolean keyEquals(String key, int value) {
+        return keyEquals(key, value, false);
+    }
+
+    /**
+     * Returns whether the value of the given boolean key is the same as the given value.
+     * @param key the key to check the value of.
+     * @param value the value to check against the key.
+     * @param fallback the default state if the key doesn't have a value.
+     * @return true if the key's value is the same as the value given.
+     */
+    public boolean keyEquals(String key, boolean value, boolean fallback) {
+        final Value VALUE = getSnapshot().get(key);
+        if (VALUE == null) return fallback;
+        return VALUE.getString().equalsIgnoreCase(String.valueOf(value));
+    }
+
+    /**
+     * Returns whether the value of the given boolean key is the same as the given value.
+     * @param key the key to check the value of.
+     * @param value the value to check against the key.
+     * @return true if the key's value is the same as the value given, false if the key doesn't exist.
+     */
+    public boolean keyEquals(String key, boolean value) {
+        return keyEquals(key, value, false);
+    }
+
+    /**
+     * Gets all keys from the Configuration.
+     * @return every key in the Configuration.
+     */
+    public String[] getKeys() {
+        return getSnapshot().getValues().keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Gets a read-only view of the settings as they are now, which later changes to the Configuration aren't seen through.
+     * Settings are kept in a persistent map that shares its structure between versions, so nothing is copied.
+     * @return the point-in-time view of the settings.
+     */
+    public Map<String, String> snapshot() {
+        final Snapshot SNAPSHOT = getSnapshot();
+        return new PrefixView(() -> SNAPSHOT, "");
+    }
+
+    /**
+     * Gets the keys from the Configuration that start with the given prefix, in sorted order.
+     * The keys are kept sorted, so only the matching keys are visited rather than every key in the Configuration.
+     * @param prefix the prefix of the keys to get, which is matched ignoring case if keys are case-insensitive.
+     * @return the matching keys.
+     */
+    public String[] getKeys(String prefix) {
+        final Snapshot SNAPSHOT = getSnapshot();
+        final int START = SNAPSHOT.findPrefixStart(prefix);
+
+        return Arrays.copyOfRange(SNAPSHOT.getSortedKeys(), START, SNAPSHOT.findPrefixEnd(prefix, START));
+    }
+
+    /**
+     * Gets a live, read-only view of the settings whose keys start with the given prefix, with the prefix removed from the keys.
+     * For example, {@code subset("DB_").get("URL")} gets the value of {@code DB_URL}.
+     * Nothing is copied, so the view always shows the latest settings, including those set or reloaded after it was created.
+     * @param prefix the prefix of the keys to include, which is matched ignoring case if keys are case-insensitive.
+     * @return the view of the matching settings.
+     */
+    public Map<String, String> subset(String prefix) {
+        return new PrefixView(this::getSnapshot, Objects.requireNonNull(prefix));
+    }
+
+    /**
+     * Creates a record or bean holding the settings it declares, reading each property from the key named after it,
+     * so a property called {@code databaseUrl} reads {@code DATABASE_URL}.
+     * Every property is read from the same version of the Configuration, so binding again after a reload never mixes old and new settings.
+     * Properties may be Strings, ints, longs, doubles, booleans, their boxed types, Durations or Lists of Strings.
+     * A bean's setters of any other type aren't settings and are left alone, while a record can't have components of any other type.
+     * A missing key leaves a record component null, unless it is a primitive, in which case the key is required.
+     * A bean's setter is never called for a missing key, so the property keeps the value the bean was constructed with.
+     * @param type the record, or class with a no-argument constructor and setters, to bind.
+     * @param <T> the type being bound.
+     * @return a new instance of the type.
+     * @throws MissingKeyException if the key of a primitive record component couldn't be found.
+     * @throws ValueFormatException if a setting isn't in the right format for its property.
+     * @throws NumberFormatException if a setting isn't a valid number for its property.
+     * @throws IllegalArgumentException if the type can't be bound, or is a record with a component of an unsupported type.
+     */
+    public <T> T bind(Class<T> type) throws MissingKeyException, ValueFormatException {
+        return Binder.of(type).bind(getSnapshot(), stackTraces);
+    }
+
+    /**
+     * Loads the settings from the Environment File, or every layer of a layered Configuration,
+     * discarding any values set since the last load that haven't been saved.
+     * If a schema has been set, every setting is checked against it before any are published.
+     * @throws IOException if an error occurs when reading the file.
+     * @throws IllegalArgumentException if a key refers back to itself through its references,
+     *         or refers to a key that doesn't exist while references are strict, in which case the Configuration keeps its previous settings.
+     * @throws SchemaViolationException if the settings don't match the schema, listing every violation,
+     *         in which case the Configuration keeps its previous settings.
+     */
+    public void load() throws IOException {
+        checkNotFrozen();
+
+        final ConfigurationEvents.Load EVENT = new ConfigurationEvents.Load();
+        final long START = System.nanoTime();
+        EVENT.begin();
+
+        final List<Map<String, Value>> LAYERS = new ArrayList<>(FILES.size());
+        long bytes = 0;
+
+        for (final EnvironmentFile LAYER_FILE: FILES) {
+            final Map<String, Value> LAYER = new HashMap<>();
+            bytes += loadLayer(LAYER_FILE, LAYER);
+            LAYERS.add(LAYER);
+        }
+
+        //The schema's defaults are the lowest layer, so they are only used where no File sets the key.
+        final ConfigurationSchema SCHEMA = schema;
+        if (SCHEMA != null) {
+            final Map<String, Value> DEFAULTS = new HashMap<>();
+            for (final Map.Entry<String, String> ENTRY: SCHEMA.getDefaults().entrySet())
+                DEFAULTS.put(ENTRY.getKey(), newValue(ENTRY.getValue()));
+
+            LAYERS.add(DEFAULTS);
+        }
+
+        final Map<String, Value> ENVIRONMENT = SYSTEM_ENVIRONMENT ? loadSystemEnvironment() : Map.of();
+        final Map<String, Value> PREVIOUS_SETTINGS;
+        final Map<String, Value> SETTINGS;
+        final DependencyGraph PREVIOUS_DEPENDENCIES;
+
+        synchronized (WRITE_LOCK) {
+            checkNotFrozen();
+
+            SETTINGS = flattenLayers(LAYERS, ENVIRONMENT);
+            final Snapshot SNAPSHOT = prepareSnapshot(SETTINGS, SETTINGS.keySet());
+
+            layers = LAYERS;
+            environment = ENVIRONMENT;
+            overrides = new HashMap<>();
+
+            PREVIOUS_SETTINGS = snapshot.getValues();
+            PREVIOUS_DEPENDENCIES = dependencies;
+            dependencies = new DependencyGraph(SETTINGS, caseInsensitiveKeys);
+            snapshot = SNAPSHOT;
+            DIRTY_KEYS.clear();
+        }
+
+        EVENT.end();
+        if (EVENT.shouldCommit()) {
+            EVENT.path = FILE.getPath().toString();
+            EVENT.bytes = bytes;
+            EVENT.keys = SETTINGS.size();
+            EVENT.commit();
+        }
+
+        final ConfigurationMetrics METRICS = metrics;
+        if (METRICS != ConfigurationMetrics.NONE)
+            METRICS.onLoad(Duration.ofNanos(System.nanoTime() - START), bytes, SETTINGS.size());
+
+        if (!LISTENERS.isEmpty()) {
+            final Set<String> CHANGED_KEYS = getChangedKeys(PREVIOUS_SETTINGS, SETTINGS);
+
+            //Keys that reference a changed key may expand differently, under either the old or new references.
+            if (!CHANGED_KEYS.isEmpty()) {
+                final Set<String> DEPENDENTS = PREVIOUS_DEPENDENCIES.getDependents(CHANGED_KEYS);
+                DEPENDENTS.addAll(dependencies.getDependents(CHANGED_KEYS));
+                DEPENDENTS.retainAll(SETTINGS.keySet());
+
+                CHANGED_KEYS.addAll(DEPENDENTS);
+                notifyListeners(Collections.unmodifiableSet(CHANGED_KEYS));
+            }
+        }
+    }
+
+    /**
+     * Loads the settings on the common fork-join pool, so the calling thread doesn't block on reading the Files.
+     * @return a future completed with this Configuration once it has loaded,
+     *         or completed exceptionally with the IOException thrown by {@link #load()}.
+     */
+    public CompletableFuture<Configuration> loadAsync() {
+        return loadAsync(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Loads the settings on the given Executor, so the calling thread doesn't block on reading the Files.
+     * @param executor the Executor to load the settings on.
+     * @return a future completed with this Configuration once it has loaded,
+     *         or completed exceptionally with the IOException thrown by {@link #load()}.
+     */
+    public CompletableFuture<Configuration> loadAsync(Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                load();
+            }
+            catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+
+            return this;
+        }, executor);
+    }
+
+    /**
+     * Defers loading the settings until they are first read or set, so a Configuration that is never used
+     * never locates, reads or parses its Files. If the settings were already loaded, they're loaded again on next use.
+     * As the getters can't throw an IOException, a failure to load is thrown from the first getter as an UncheckedIOException,
+     * and the load is attempted again by the next.
+     * @return this Configuration.
+     */
+    public Configuration loadOnFirstUse() {
+        synchronized (WRITE_LOCK) {
+            checkNotFrozen();
+            snapshot = PENDING_LOAD;
+        }
+
+        return this;
+    }
+
+    /**
+     * Freezes the Configuration, compiling its current settings into a compact immutable table for faster lookups.
+     * Once frozen, the settings can never change again, so setting a key, loading or reloading
+     * throws an UnsupportedOperationException. Values that haven't been saved yet can still be saved.
+     * @return this Configuration.
+     */
+    public Configuration freeze() {
+        getSnapshot();
+
+        synchronized (WRITE_LOCK) {
+            if (frozen) return this;
+
+            snapshot = new Snapshot(new FrozenTable(snapshot.getValues(), caseInsensitiveKeys), caseInsensitiveKeys);
+            frozen = true;
+
+            //Only the published settings are needed from now on.
+            layers = List.of();
+            environment = Map.of();
+            overrides = Map.of();
+        }
+
+        return this;
+    }
+
+    /**
+     * Returns whether the Configuration has been frozen.
+     * @return true if the settings can no longer change.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Reloads any Environment File whose size or modification time has changed since it was last loaded or saved,
+     * only resolving again the keys whose values changed. Unchanged files aren't read at all, so this is cheap to poll.
+     * Values set in code are kept. If the Configuration hasn't been loaded yet, it is loaded in full.
+     * @return true if any file was reloaded.
+     * @throws IOException if an error occurs when reading a file.
+     */
+    public boolean reloadIfChanged() throws IOException {
+        return reloadIfChanged(false);
+    }
+
+    /**
+     * Reloads any Environment File that has changed since it was last loaded or saved,
+     * only resolving again the keys whose values changed. Values set in code are kept.
+     * If the Configuration hasn't been loaded yet, it is loaded in full.
+     * @param compareContents whether a file with a new modification time but the same size should have its contents hashed,
+     *                        so a file rewritten with the same text isn't reloaded.
+     * @return true if any file was reloaded.
+     * @throws IOException if an error occurs when reading a file.
+     */
+    public boolean reloadIfChanged(boolean compareContents) throws IOException {
+        checkNotFrozen();
+
+        final boolean LOADED;
+        synchronized (WRITE_LOCK) {
+            LOADED = snapshot != PENDING_LOAD && !layers.isEmpty();
+        }
+
+        if (!LOADED) {
+            load();
+            return true;
+        }
+
+        boolean reloaded = false;
+        for (final EnvironmentFile LAYER_FILE: FILES) {
+            if (!LAYER_FILE.isChanged(compareContents)) continue;
+
+            reloadLayer(LAYER_FILE.getPath());
+            reloaded = true;
+        }
+
+        return reloaded;
+    }
+
+    /**
+     * Reloads a single layer of the Configuration, only resolving again the keys whose value in that layer changed.
+     * Values set in code are kept.
+     * @param path the path of the layer's Environment File.
+     * @throws IOException if an error occurs when reading the file.
+     * @throws IllegalArgumentException if the reloaded settings refer back to themselves through their references,
+     *         or refer to a key that doesn't exist while references are strict, in which case the layer isn't reloaded.
+     * @throws SchemaViolationException if the reloaded settings don't match the schema, in which case the layer isn't reloaded.
+     */
+    /* package-private */ void reloadLayer(Path path) throws IOException {
+        int index = -1;
+        for (int i = 0; i < FILES.size() && index < 0; i++)
+            if (FILES.get(i).getPath().equals(path)) index = i;
+
+        if (index < 0) return;
+
+        final ConfigurationEvents.Reload EVENT = new ConfigurationEvents.Reload();
+        final long START = System.nanoTime();
+        EVENT.begin();
+
+        final Map<String, Value> LAYER = new HashMap<>();
+        final long BYTES = loadLayer(FILES.get(index), LAYER);
+        final Set<String> CHANGED_KEYS = new HashSet<>();
+
+        synchronized (WRITE_LOCK) {
+            checkNotFrozen();
+
+            //The whole Configuration will be read when it is first loaded.
+            if (snapshot == PENDING_LOAD || layers.isEmpty()) return;
+
+            final Map<String, Value> PREVIOUS_LAYER = layers.get(index);
+            final List<Map<String, Value>> PREVIOUS_LAYERS = layers;
+            final List<Map<String, Value>> LAYERS = new ArrayList<>(layers);
+            LAYERS.set(index, LAYER);
+            layers = LAYERS;
+
+            PersistentMap settings = PersistentMap.of(snapshot.getValues(), caseInsensitiveKeys);
+
+            //Only keys that changed within this layer can have a different resolved value.
+            for (final String KEY: getChangedKeys(PREVIOUS_LAYER, LAYER)) {
+                final Value VALUE = resolve(KEY);
+                final Value PREVIOUS = settings.get(KEY);
+
+                if (VALUE == null ? PREVIOUS == null : PREVIOUS != null && PREVIOUS.getRaw().equals(VALUE.getRaw()))
+                    continue;
+
+                //The layer's Value may have been expanded before it was shadowed, so publish a copy to expand again.
+                settings = VALUE != null ? settings.with(KEY, VALUE.copy()) : settings.without(KEY);
+
+                dependencies.update(KEY, PREVIOUS, VALUE);
+                CHANGED_KEYS.add(KEY);
+            }
+
+            if (!CHANGED_KEYS.isEmpty()) {
+                try {
+                    settings = invalidateDependents(settings, CHANGED_KEYS);
+                    snapshot = prepareSnapshot(settings, CHANGED_KEYS);
+                }
+                catch (RuntimeException ex) {
+                    layers = PREVIOUS_LAYERS;
+                    dependencies = new DependencyGraph(snapshot.getValues(), caseInsensitiveKeys);
+                    throw ex;
+                }
+            }
+        }
+
+        EVENT.end();
+        if (EVENT.shouldCommit()) {
+            EVENT.path = path.toString();
+            EVENT.bytes = BYTES;
+            EVENT.keys = CHANGED_KEYS.size();
+            EVENT.commit();
+        }
+
+        final ConfigurationMetrics METRICS = metrics;
+        if (METRICS != ConfigurationMetrics.NONE)
+            METRICS.onReload(Duration.ofNanos(System.nanoTime() - START), BYTES, CHANGED_KEYS.size());
+
+        if (!LISTENERS.isEmpty() && !CHANGED_KEYS.isEmpty())
+            notifyListeners(Collections.unmodifiableSet(CHANGED_KEYS));
+    }
+
+    /**
+     * Saves the settings to the Environment File.
+     * Only keys that have been set since the last load or save are written, and nothing is written if there are none.
+     * @throws IOException if an error occurs when writing to the file.
+     */
+    public void save() throws IOException {
+        synchronized (SAVE_LOCK) {
+            final Map<String, String> SETTINGS = new HashMap<>();
+
+            synchronized (WRITE_LOCK) {
+                if (DIRTY_KEYS.isEmpty()) return;
+
+                for (final String KEY: DIRTY_KEYS)
+                    SETTINGS.put(KEY, snapshot.getValues().get(KEY).getRaw());
+
+                DIRTY_KEYS.clear();
+            }
+
+            final ConfigurationEvents.Save EVENT = new ConfigurationEvents.Save();
+            final long START = System.nanoTime();
+            final long BYTES;
+            EVENT.begin();
+
+            try {
+                BYTES = FILE.save(SETTINGS);
+            }
+            catch (IOException | RuntimeException ex) {
+                //Keep the keys dirty so the next save tries them again.
+                synchronized (WRITE_LOCK) {
+                    DIRTY_KEYS.addAll(SETTINGS.keySet());
+                }
+
+                throw ex;
+            }
+
+            EVENT.end();
+            if (EVENT.shouldCommit()) {
+                EVENT.path = FILE.getPath().toString();
+                EVENT.bytes = BYTES;
+                EVENT.keys = SETTINGS.size();
+                EVENT.commit();
+            }
+
+            final ConfigurationMetrics METRICS = metrics;
+            if (METRICS != ConfigurationMetrics.NONE)
+                METRICS.onSave(Duration.ofNanos(System.nanoTime() - START), BYTES, SETTINGS.size());
+        }
+    }
+
+    /**
+     * Sets whether a compiled binary copy of the settings is kept beside the Environment File, named after it with a
+     * {@code .compiled} suffix. While the File's size, modification time and contents are unchanged,
+     * {@link #load()} reads the compiled copy with a single mapped read rather than parsing the text,
+     * and a stale or corrupt copy is rebuilt the next time the File is parsed.
+     * @param enabled true to use the compiled cache.
+     */
+    public void setCompiledCacheEnabled(boolean enabled) {
+        for (final EnvironmentFile LAYER_FILE: FILES)
+            LAYER_FILE.setCompiledCacheEnabled(enabled);
+    }
+
+    /**
+     * Enables write-behind, where setting a key schedules a save on a background thread rather than waiting for {@link #save()}.
+     * Every key set before the save runs is written in the same batch, so many sets in quick succession only write the file once.
+     * A failed background save is reported to the write-behind thread's uncaught exception handler, which prints it by default,
+     * and is tried again after the same delay while its keys are still waiting to be written.
+     * @param delay how long to wait after a key is first set before saving.
+     */
+    public void enableWriteBehind(Duration delay) {
+        enableWriteBehind(delay, EnvironmentWatcher::reportUncaught);
+    }
+
+    /**
+     * Enables write-behind, where setting a key schedules a save on a background thread rather than waiting for {@link #save()}.
+     * Every key set before the save runs is written in the same batch, so many sets in quick succession only write the file once.
+     * A failed background save is tried again after the same delay while its keys are still waiting to be written.
+     * @param delay how long to wait after a key is first set before saving.
+     * @param errorHandler called on the write-behind thread with any Exception thrown by a background save.
+     */
+    public void enableWriteBehind(Duration delay, Consumer<Exception> errorHandler) {
+        Objects.requireNonNull(errorHandler, "The error handler of write-behind can't be null.");
+
+        synchronized (WRITE_LOCK) {
+            if (writeBehindExecutor == null)
+                writeBehindExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    final Thread THREAD = new Thread(runnable, "dotenv-write-behind");
+                    THREAD.setDaemon(true);
+
+                    return THREAD;
+                });
+
+            writeBehindDelay = delay;
+            writeBehindErrorHandler = errorHandler;
+            scheduleWriteBehind();
+        }
+    }
+
+    /**
+     * Disables write-behind, saving any keys that are still waiting to be written.
+     * @throws IOException if an error occurs when writing to the file.
+     */
+    public void disableWriteBehind() throws IOException {
+        final ScheduledExecutorService EXECUTOR;
+
+        synchronized (WRITE_LOCK) {
+            EXECUTOR = writeBehindExecutor;
+            writeBehindExecutor = null;
+            writeBehindScheduled = false;
+        }
+
+        if (EXECUTOR != null) EXECUTOR.shutdownNow();
+        save();
+    }
+
+    /**
+     * Watches the Environment File, or every File of a layered Configuration,
+     * reloading the layer that changed in the background whenever one does.
+     * @return the watcher, which should be closed to stop watching.
+     * @throws IOException if the Environment File can't be watched.
+     */
+    public EnvironmentWatcher watch() throws IOException {
+        return watch(DEFAULT_WATCH_DEBOUNCE);
+    }
+
+    /**
+     * Watches the Environment File, reloading the Configuration in the background once it stops changing.
+     * A reload that fails for any reason other than the File being unreadable is reported to the watcher thread's
+     * uncaught exception handler, which prints it by default.
+     * @param debounce how long the Environment File must go without changing before it is reloaded.
+     * @return the watcher, which should be closed to stop watching.
+     * @throws IOException if the Environment File can't be watched.
+     */
+    public EnvironmentWatcher watch(Duration debounce) throws IOException {
+        return watch(debounce, EnvironmentWatcher::reportUncaught);
+    }
+
+    /**
+     * Watches the Environment File, reloading the Configuration in the background once it stops changing.
+     * A File that can't be read is skipped until it next changes, as it may be part way through being replaced.
+     * @param debounce how long the Environment File must go without changing before it is reloaded.
+     * @param errorHandler called on the watcher thread with any other Exception thrown by a reload,
+     *                     such as a SchemaViolationException or an Exception thrown by a listener.
+     * @return the watcher, which should be closed to stop watching.
+     * @throws IOException if the Environment File can't be watched.
+     */
+    public EnvironmentWatcher watch(Duration debounce, Consumer<RuntimeException> errorHandler) throws IOException {
+        Objects.requireNonNull(errorHandler, "The error handler of a watcher can't be null.");
+
+        final List<Path> PATHS = new ArrayList<>(FILES.size());
+        for (final EnvironmentFile LAYER_FILE: FILES) PATHS.add(LAYER_FILE.getPath());
+
+        return new EnvironmentWatcher(this, PATHS, debounce, errorHandler);
+    }
+
+    /**
+     * Registers a listener to be notified whenever the Configuration's settings change.
+     * @param listener the listener to add.
+     */
+    public void addListener(ConfigurationListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * Stops a listener from being notified of changes to the Configuration's settings.
+     * @param listener the listener to remove.
+     */
+    public void removeListener(ConfigurationListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * The Environment Files of every layer in order of precedence, highest first, ending with the primary File.
+     */
+    private final List<EnvironmentFile> FILES;
+    private final EnvironmentFile FILE;
+    private final boolean SYSTEM_ENVIRONMENT;
+    private final StringPool STRING_POOL;
+    private final Object WRITE_LOCK = new Object();
+    private final Object SAVE_LOCK = new Object();
+    private final Set<String> DIRTY_KEYS = new HashSet<>();
+    private final List<ConfigurationListener> LISTENERS = new CopyOnWriteArrayList<>();
+    private volatile boolean stackTraces = true;
+    private volatile ConfigurationMetrics metrics = ConfigurationMetrics.NONE;
+
+    /**
+     * Whether the settings have been compiled into an immutable table, and whether keys are looked up ignoring case.
+     * Only changed while holding the write lock.
+     */
+    private volatile boolean frozen;
+    private volatile boolean caseInsensitiveKeys;
+
+    /**
+     * The cipher used to decrypt encrypted values, or null if no encryption key has been set.
+     */
+    private volatile ValueCipher cipher;
+
+    /**
+     * The schema the settings are checked against, or null if they aren't checked.
+     */
+    private volatile ConfigurationSchema schema;
+
+    /**
+     * Whether settings referencing a key that doesn't exist are rejected.
+     */
+    private volatile boolean strictReferences;
+
+    /**
+     * The settings of each layer, matching the order of the Files and followed by the schema's defaults,
+     * along with the system environment and the values set in code. Only accessed while holding the write lock.
+     */
+    private List<Map<String, Value>> layers = List.of();
+    private Map<String, Value> environment = Map.of();
+    private Map<String, Value> overrides = new HashMap<>();
+
+    /**
+     * The references between the keys of the published settings. Only accessed while holding the write lock.
+     */
+    private DependencyGraph dependencies = new DependencyGraph(Map.of(), false);
+
+    private ScheduledExecutorService writeBehindExecutor;
+    private Duration writeBehindDelay;
+    private Consumer<Exception> writeBehindErrorHandler;
+    private boolean writeBehindScheduled;
+
+    private static final Duration DEFAULT_WATCH_DEBOUNCE = Duration.ofMillis(250);
+
+    /**
+     * The current settings, never modified once published so readers can use them without locking.
+     */
+    private volatile Snapshot snapshot = new Snapshot(new HashMap<>());
+
+    /**
+     * Published in place of the settings while loading is deferred until they are first used.
+     */
+    private static final Snapshot PENDING_LOAD = new Snapshot(Map.of());
+    private final Object LAZY_LOAD_LOCK = new Object();
+
+    /**
+     * Gets the published settings, first loading them if loading was deferred until they're used.
+     * @return the current snapshot of the settings.
+     * @throws UncheckedIOException if the deferred load fails.
+     */
+    /* package-private */ Snapshot getSnapshot() {
+        final Snapshot SNAPSHOT = snapshot;
+        if (SNAPSHOT != PENDING_LOAD) return SNAPSHOT;
+
+        synchronized (LAZY_LOAD_LOCK) {
+            if (snapshot == PENDING_LOAD) {
+                try {
+                    load();
+                }
+                catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+
+            return snapshot;
+        }
+    }
+
+    /**
+     * Gets the key that a key is stored under while keys are case-insensitive.
+     * Must be called while holding the write lock.
+     * @param key the key to normalise.
+     * @return the existing key that matches the given key ignoring case, or the given key upper-cased if there isn't one.
+     */
+    private String normalizeKey(String key) {
+        final String STORED = snapshot.getKey(key);
+        return STORED != null ? STORED : key.toUpperCase();
+    }
+
+    /**
+     * Throws if the Configuration has been frozen, before anything is changed.
+     * @throws UnsupportedOperationException if the Configuration is frozen.
+     */
+    private void checkNotFrozen() {
+        if (frozen)
+            throw new UnsupportedOperationException("The Configuration is frozen, so its settings can't be changed.");
+    }
+
+    /**
+     * Loads the settings of a single layer, treating a missing File as empty unless it is the primary File.
+     * @param LAYER_FILE the Environment File of the layer.
+     * @param SETTINGS the map to add the settings of the layer to.
+     * @return the number of bytes read.
+     * @throws IOException if an error occurs when reading the file.
+     */
+    private long loadLayer(final EnvironmentFile LAYER_FILE, final Map<String, Value> SETTINGS) throws IOException {
+        try {
+            if (STRING_POOL == null) return LAYER_FILE.load((key, value, literal) -> SETTINGS.put(key, newValue(value, literal)));
+            else return LAYER_FILE.load((key, value, literal) -> SETTINGS.put(STRING_POOL.intern(key), newValue(STRING_POOL.intern(value), literal)));
+        }
+        catch (NoSuchFileException ex) {
+            if (LAYER_FILE == FILE) throw ex;
+            return 0;
+        }
+    }
+
+    /**
+     * Creates the Value of a setting, which is left encrypted until it is read if an encryption key has been set.
+     * @param RAW the String value of the setting.
+     * @return the new Value.
+     */
+    private Value newValue(final String RAW) {
+        return newValue(RAW, false);
+    }
+
+    /**
+     * Creates the Value of a setting, which is left encrypted until it is read if an encryption key has been set.
+     * @param RAW the String value of the setting.
+     * @param LITERAL whether the value's references are left unexpanded, as they are in single-quoted values.
+     * @return the new Value.
+     */
+    private Value newValue(final String RAW, final boolean LITERAL) {
+        final ValueCipher CIPHER = cipher;
+        return CIPHER != null && ValueCipher.isEncrypted(RAW) ? new Value(RAW, CIPHER) : new Value(RAW, LITERAL);
+    }
+
+    /**
+     * Loads the variables of the system environment as a layer.
+     * @return the settings of the system environment.
+     */
+    private Map<String, Value> loadSystemEnvironment() {
+        final Map<String, Value> SETTINGS = new HashMap<>();
+        for (final Map.Entry<String, String> ENTRY: System.getenv().entrySet())
+            SETTINGS.put(ENTRY.getKey().toUpperCase(), newValue(ENTRY.getValue()));
+
+        return SETTINGS;
+    }
+
+    /**
+     * Flattens freshly loaded layers into a single set of settings, starting with the lowest precedence so higher layers overwrite it.
+     * @param LAYERS the settings of each layer, in order of precedence.
+     * @param ENVIRONMENT the settings of the system environment, which overwrite every layer.
+     * @return the flattened settings.
+     */
+    private static Map<String, Value> flattenLayers(final List<Map<String, Value>> LAYERS, final Map<String, Value> ENVIRONMENT) {
+        final Map<String, Value> SETTINGS = new HashMap<>();
+
+        for (int i = LAYERS.size() - 1; i >= 0; i--)
+            SETTINGS.putAll(LAYERS.get(i));
+
+        SETTINGS.putAll(ENVIRONMENT);
+
+        return SETTINGS;
+    }
+
+    /**
+     * Creates the snapshot of settings that are about to be published, checking the references of the changed keys
+     * and checking the settings against the schema if one is set.
+     * Checking the settings parses each declared value, so the typed getters find it already converted.
+     * Must be called while holding the write lock, before anything has been changed, as nothing may be published if it throws.
+     * @param SETTINGS the settings about to be published.
+     * @param CHANGED_KEYS the keys whose Values changed, including the keys that depend on them.
+     * @return the snapshot to publish.
+     * @throws IllegalArgumentException if a changed key refers back to itself through its references,
+     *         or refers to a key that doesn't exist while references are strict.
+     * @throws SchemaViolationException if the settings don't match the schema, listing every violation.
+     */
+    private Snapshot prepareSnapshot(final Map<String, Value> SETTINGS, final Collection<String> CHANGED_KEYS) {
+        final Snapshot SNAPSHOT = new Snapshot(SETTINGS, caseInsensitiveKeys);
+        SNAPSHOT.checkReferences(CHANGED_KEYS, strictReferences);
+
+        final ConfigurationSchema SCHEMA = schema;
+        if (SCHEMA != null) SCHEMA.check(SNAPSHOT);
+
+        return SNAPSHOT;
+    }
+
+    /**
+     * Resolves the Value of a single key by checking each layer in order of precedence.
+     * Must be called while holding the write lock.
+     * @param key the key to resolve.
+     * @return the Value from the highest layer that has the key, or null if none do.
+     */
+    private Value resolve(String key) {
+        Value value = overrides.get(key);
+        if (value == null) value = environment.get(key);
+
+        for (int i = 0; value == null && i < layers.size(); i++)
+            value = layers.get(i).get(key);
+
+        return value;
+    }
+
+    /**
+     * Replaces the Values that depend on changed keys with copies, so they are expanded again when next read.
+     * Must be called while holding the write lock.
+     * @param SETTINGS the settings that are about to be published.
+     * @param CHANGED_KEYS the keys that changed, which the dependent keys are added to.
+     * @return the settings with the dependent Values replaced.
+     */
+    private PersistentMap invalidateDependents(final PersistentMap SETTINGS, final Set<String> CHANGED_KEYS) {
+        PersistentMap settings = SETTINGS;
+
+        for (final String DEPENDENT: dependencies.getDependents(CHANGED_KEYS)) {
+            final Value VALUE = settings.get(DEPENDENT);
+            if (VALUE == null) continue;
+
+            settings = settings.with(DEPENDENT, VALUE.copy());
+            CHANGED_KEYS.add(DEPENDENT);
+        }
+
+        return settings;
+    }
+
+    /**
+     * Sets the values of a group of keys, publishing them together in a single snapshot.
+     * Only the paths to the changed keys are copied in the persistent map of settings, never the whole map,
+     * as it looks up keys ignoring case itself while keys are case-insensitive.
+     * The map is only built from scratch the first time the settings change after a load, or after the case mode is changed.
+     * @param UPDATES the new value of each key.
+     * @return the previous value of each given key, null for keys that didn't have one.
+     */
+    private Map<String, String> applyUpdates(final Map<String, String> UPDATES) {
+        getSnapshot();
+
+        //A value that could never be saved is rejected now, rather than by every save that follows.
+        for (final Map.Entry<String, String> UPDATE: UPDATES.entrySet())
+            EnvironmentFile.formatValue(UPDATE.getKey(), UPDATE.getValue());
+
+        final Map<String, String> PREVIOUS_VALUES = new HashMap<>();
+        final Map<String, Value> OVERRIDES = new HashMap<>();
+        final Set<String> CHANGED_KEYS = new HashSet<>();
+        final Set<String> DIRTIED_KEYS = new HashSet<>();
+
+        synchronized (WRITE_LOCK) {
+            checkNotFrozen();
+
+            PersistentMap settings = PersistentMap.of(snapshot.getValues(), caseInsensitiveKeys);
+
+            for (final Map.Entry<String, String> UPDATE: UPDATES.entrySet()) {
+                final String KEY = caseInsensitiveKeys ? normalizeKey(UPDATE.getKey()) : UPDATE.getKey();
+                final Value VALUE = newValue(UPDATE.getValue());
+                OVERRIDES.put(KEY, VALUE);
+
+                final Value PREVIOUS = settings.get(KEY);
+                settings = settings.with(KEY, VALUE);
+                dependencies.update(KEY, PREVIOUS, VALUE);
+
+                final String PREVIOUS_VALUE = PREVIOUS != null ? PREVIOUS.getRaw() : null;
+                PREVIOUS_VALUES.put(UPDATE.getKey(), PREVIOUS_VALUE);
+
+                if (!Objects.equals(PREVIOUS_VALUE, UPDATE.getValue())) {
+                    CHANGED_KEYS.add(KEY);
+                    DIRTIED_KEYS.add(KEY);
+                }
+            }
+
+            if (!CHANGED_KEYS.isEmpty()) settings = invalidateDependents(settings, CHANGED_KEYS);
+
+            //Nothing is changed until the new settings are known to be sound.
+            final Snapshot SNAPSHOT;
+            try {
+                SNAPSHOT = prepareSnapshot(settings, CHANGED_KEYS);
+            }
+            catch (RuntimeException ex) {
+                dependencies = new DependencyGraph(snapshot.getValues(), caseInsensitiveKeys);
+                throw ex;
+            }
+
+            overrides.putAll(OVERRIDES);
+            DIRTY_KEYS.addAll(DIRTIED_KEYS);
+            if (!CHANGED_KEYS.isEmpty()) scheduleWriteBehind();
+
+            snapshot = SNAPSHOT;
+        }
+
+        if (!LISTENERS.isEmpty() && !CHANGED_KEYS.isEmpty())
+            notifyListeners(Collections.unmodifiableSet(CHANGED_KEYS));
+
+        return PREVIOUS_VALUES;
+    }
+
+    /**
+     * Schedules a write-behind save if write-behind is enabled, there are dirty keys and one isn't already scheduled.
+     * Must be called while holding the write lock.
+     */
+    private void scheduleWriteBehind() {
+        if (writeBehindExecutor == null || writeBehindScheduled || DIRTY_KEYS.isEmpty()) return;
+
+        writeBehindScheduled = true;
+        writeBehindExecutor.schedule(this::flushWriteBehind, writeBehindDelay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Saves the dirty keys on the write-behind thread.
+     * If the save fails, its keys are still dirty, so another save is scheduled before the failure is reported.
+     */
+    private void flushWriteBehind() {
+        final Consumer<Exception> ERROR_HANDLER;
+
+        synchronized (WRITE_LOCK) {
+            writeBehindScheduled = false;
+            ERROR_HANDLER = writeBehindErrorHandler;
+        }
+
+        try {
+            save();
+        }
+        catch (IOException | RuntimeException ex) {
+            synchronized (WRITE_LOCK) {
+                scheduleWriteBehind();
+            }
+
+            ERROR_HANDLER.accept(ex);
+        }
+    }
+
+    /**
+     * Finds every key whose value differs between two sets of settings.
+     * @param PREVIOUS_SETTINGS the settings before the change.
+     * @param SETTINGS the settings after the change.
+     * @return the keys that were added, removed or given a different value.
+     */
+    private Set<String> getChangedKeys(final Map<String, Value> PREVIOUS_SETTINGS, final Map<String, Value> SETTINGS) {
+        final Set<String> CHANGED_KEYS = new HashSet<>();
+
+        for (final Map.Entry<String, Value> ENTRY: SETTINGS.entrySet()) {
+            final Value PREVIOUS = PREVIOUS_SETTINGS.get(ENTRY.getKey());
+            if (PREVIOUS == null || !PREVIOUS.getRaw().equals(ENTRY.getValue().getRaw()))
+                CHANGED_KEYS.add(ENTRY.getKey());
+        }
+
+        for (final String KEY: PREVIOUS_SETTINGS.keySet())
+            if (!SETTINGS.containsKey(KEY))
+                CHANGED_KEYS.add(KEY);
+
+        return CHANGED_KEYS;
+    }
+
+    /**
+     * Notifies every registered listener of a change to the settings.
+     * @param CHANGED_KEYS the keys that changed.
+     */
+    private void notifyListeners(final Set<String> CHANGED_KEYS) {
+        for (final ConfigurationListener LISTENER: LISTENERS)
+            LISTENER.onChange(this, CHANGED_KEYS);
+    }
+
+    /**
+     * Gets the value of a key, parsed by the given parser.
+     * @param key the key to get the value of.
+     * @param PARSER the parser to use, the result of which is cached with the value.
+     * @param <T> the type of value produced.
+     * @param <E> the type of Exception thrown when the value isn't in the right format.
+     * @return the given key's parsed value.
+     * @throws E if the key's value isn't in the right format.
+     * @throws MissingKeyException if the key couldn't be found.
+     */
+    private <T, E extends Exception> T getParsed(String key, final ValueParser<T, E> PARSER) throws E, MissingKeyException {
+        return getParsed(getSnapshot().get(key), key, PARSER);
+    }
+
+    /**
+     * Gets the parsed value of a key through its handle.
+     * @param key the handle of the key to get the value of.
+     * @param PARSER the parser to use, the result of which is cached with the value.
+     * @param <T> the type of value produced.
+     * @param <E> the type of Exception thrown when the value isn't in the right format.
+     * @return the given key's parsed value.
+     * @throws E if the key's value isn't in the right format.
+     * @throws MissingKeyException if the key couldn't be found.
+     */
+    private <T, E extends Exception> T getParsed(ConfigurationKey key, final ValueParser<T, E> PARSER) throws E, MissingKeyException {
+        return getParsed(getSnapshot().get(key), key.getName(), PARSER);
+    }
+
+    /**
+     * Parses a key's Value with the given parser.
+     * @param VALUE the Value to parse, or null if the key doesn't exist.
+     * @param key the name of the key, for the Exception message.
+     * @param PARSER the parser to use, the result of which is cached with the value.
+     * @param <T> the type of value produced.
+     * @param <E> the type of Exception thrown when the value isn't in the right format.
+     * @return the parsed value.
+     * @throws E if the value isn't in the right format.
+     * @throws MissingKeyException if the Value is null.
+     */
+    private <T, E extends Exception> T getParsed(final Value VALUE, String key, final ValueParser<T, E> PARSER) throws E, MissingKeyException {
+        final ConfigurationMetrics METRICS = metrics;
+        if (METRICS != ConfigurationMetrics.NONE)
+            METRICS.onLookup(ValueParsers.getType(PARSER), VALUE != null);
+
+        if (VALUE == null)
+            throw new MissingKeyException("The key \"" + key + "\" couldn't be found in the Configuration.", stackTraces);
+
+        if (METRICS == ConfigurationMetrics.NONE)
+            return VALUE.get(PARSER, stackTraces);
+
+        try {
+            return VALUE.get(PARSER, stackTraces);
+        }
+        catch (Exception ex) {
+            METRICS.onParseFailure(ValueParsers.getType(PARSER));
+            throw ex;
+        }
+    }
+
+    /**
+     * Finds the value of a key, parsed by the given parser, without creating any Exceptions for missing keys.
+     * @param key the key to find the value of.
+     * @param PARSER the parser to use, the result of which is cached with the value.
+     * @param <T> the type of value produced.
+     * @return the given key's parsed value, or null if it couldn't be found or isn't in the right format.
+     */
+    private <T> T findParsed(String key, final ValueParser<T, ?> PARSER) {
+        return findParsed(getSnapshot().get(key), PARSER);
+    }
+
+    /**
+     * Finds the parsed value of a key through its handle, without creating any Exceptions for missing keys.
+     * @param key the handle of the key to find the value of.
+     * @param PARSER the parser to use, the result of which is cached with the value.
+     * @param <T> the type of value produced.
+     * @return the given key's parsed value, or null if it couldn't be found or isn't in the right format.
+     */
+    private <T> T findParsed(ConfigurationKey key, final ValueParser<T, ?> PARSER) {
+        return findParsed(getSnapshot().get(key), PARSER);
+    }
+
+    /**
+     * Parses a key's Value with the given parser, without creating any Exceptions.
+     * @param VALUE the Value to parse, or null if the key doesn't exist.
+     * @param PARSER the parser to use, the result of which is cached with the value.
+     * @param <T> the type of value produced.
+     * @return the parsed value, or null if the Value is null or isn't in the right format.
+     */
+    private <T> T findParsed(final Value VALUE, final ValueParser<T, ?> PARSER) {
+        final T RESULT = VALUE != null ? VALUE.find(PARSER) : null;
+
+        final ConfigurationMetrics METRICS = metrics;
+        if (METRICS != ConfigurationMetrics.NONE) {
+            final ConfigurationMetrics.ValueType TYPE = ValueParsers.getType(PARSER);
+            METRICS.onLookup(TYPE, VALUE != null);
+
+            if (RESULT == null) {
+                if (VALUE != null) METRICS.onParseFailure(TYPE);
+                METRICS.onFallback(TYPE);
+            }
         }
-        catch (Exception ignored) {}
 
-        return file.toPath();
+        return RESULT;
     }
 
     /**
-     * Parses a boolean value from a String.
-     * @param string the String to parse a boolean value from.
-     * @return the boolean value of the String.
-     * @throws BooleanFormatException if the String isn't in the format of a boolean value.
+     * Records a lookup by a String getter with the metrics.
+     * @param VALUE the Value found, or null if the key doesn't exist.
+     * @param FALLBACK whether the getter has a fallback, which it returns if the key doesn't exist.
      */
-    private boolean parseBoolean(String string) throws BooleanFormatException {
-        if (string.equalsIgnoreCase("true")) return true;
-        else if (string.equalsIgnoreCase("false")) return false;
+    private void recordStringLookup(final Value VALUE, final boolean FALLBACK) {
+        final ConfigurationMetrics METRICS = metrics;
+        if (METRICS == ConfigurationMetrics.NONE) return;
 
-        throw new BooleanFormatException("\"" + string + "\" cannot be parsed into a boolean value.");
+        METRICS.onLookup(ConfigurationMetrics.ValueType.STRING, VALUE != null);
+        if (VALUE == null && FALLBACK) METRICS.onFallback(ConfigurationMetrics.ValueType.STRING);
     }
 }
\ No newline at end of file
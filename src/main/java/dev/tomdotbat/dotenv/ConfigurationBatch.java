@@ -0,0 +1,72 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Collects changes to a Configuration, to be applied together by {@link Configuration#batch(java.util.function.Consumer)}.
+ * Nothing is changed until the batch is applied, at which point every change is published at once.
+ */
+public final class ConfigurationBatch {
+    /* package-private */ ConfigurationBatch() {}
+
+    /**
+     * Sets the value of a String key once the batch is applied.
+     * @param key the key to set the value of.
+     * @param value the new value of the key.
+     * @return this batch.
+     * @throws NullPointerException if the key or value is null.
+     */
+    public ConfigurationBatch set(String key, String value) {
+        UPDATES.put(Objects.requireNonNull(key, "The key can't be null."), Objects.requireNonNull(value, "The value of a key can't be null."));
+        return this;
+    }
+
+    /**
+     * Sets the value of an integer key once the batch is applied.
+     * @param key the key to set the value of.
+     * @param value the new value of the key.
+     * @return this batch.
+     */
+    public ConfigurationBatch set(String key, int value) {
+        return set(key, String.valueOf(value));
+    }
+
+    /**
+     * Sets the value of a boolean key once the batch is applied.
+     * @param key the key to set the value of.
+     * @param value the new value of the key.
+     * @return this batch.
+     */
+    public ConfigurationBatch set(String key, boolean value) {
+        return set(key, String.valueOf(value));
+    }
+
+    /**
+     * Gets the changes collected by the batch.
+     * @return the new value of each key, in the order they were first set.
+     */
+    /* package-private */ Map<String, String> getUpdates() {
+        return UPDATES;
+    }
+
+    private final Map<String, String> UPDATES = new LinkedHashMap<>();
+}
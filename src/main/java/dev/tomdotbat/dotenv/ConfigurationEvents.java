@@ -0,0 +1,65 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The JDK Flight Recorder events recorded by a Configuration. While nothing is recording them,
+ * creating and committing an event costs next to nothing, so they're always recorded regardless of the metrics in use.
+ */
+/* package-private */ final class ConfigurationEvents {
+    private ConfigurationEvents() {}
+
+    /**
+     * The fields shared by every event.
+     */
+    @Category("dotenv")
+    /* package-private */ abstract static class FileEvent extends Event {
+        @Label("Path")
+        @Description("The path of the Environment File")
+        String path;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Keys")
+        int keys;
+    }
+
+    @Name("dev.tomdotbat.dotenv.Load")
+    @Label("Configuration Load")
+    @Description("The settings of a Configuration were loaded from every Environment File")
+    /* package-private */ static final class Load extends FileEvent {}
+
+    @Name("dev.tomdotbat.dotenv.Reload")
+    @Label("Configuration Reload")
+    @Description("A single Environment File of a Configuration was reloaded, counting the keys that changed")
+    /* package-private */ static final class Reload extends FileEvent {}
+
+    @Name("dev.tomdotbat.dotenv.Save")
+    @Label("Configuration Save")
+    @Description("The changed settings of a Configuration were saved to its Environment File")
+    /* package-private */ static final class Save extends FileEvent {}
+}
@@ -0,0 +1,102 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pre-resolved handle to a key, created with {@link Configuration#key(String)} and intended to be held in a static final field.
+ * Each handle is bound to a slot that every Configuration snapshot can fill, so reading through a handle is an array access
+ * rather than a hash lookup, while still seeing the latest value after a load or set.
+ */
+public final class ConfigurationKey {
+    private ConfigurationKey(String name, int slot) {
+        NAME = name;
+        SLOT = slot;
+    }
+
+    /**
+     * Gets the handle for a key, creating it if this is the first time it has been requested.
+     * @param name the name of the key.
+     * @return the handle for the key, the same instance is returned for every request of the same name.
+     */
+    /* package-private */ static ConfigurationKey of(String name) {
+        final ConfigurationKey KEY = KEYS.get(name);
+        if (KEY != null) return KEY;
+
+        return KEYS.computeIfAbsent(name, newName -> new ConfigurationKey(newName, NEXT_SLOT.getAndIncrement()));
+    }
+
+    /**
+     * Converts a property name to the name of the key it is read from, splitting camel case with underscores,
+     * so {@code databaseUrl} becomes {@code DATABASE_URL}. This is how {@link Configuration#bind(Class)}
+     * and the accessors generated for {@link dev.tomdotbat.dotenv.annotation.Settings} interfaces name their keys.
+     * @param property the name of the property.
+     * @return the upper-cased name of the key.
+     */
+    public static String nameOf(String property) {
+        final StringBuilder KEY_BUILDER = new StringBuilder(property.length() + 4);
+
+        for (int i = 0; i < property.length(); i++) {
+            final char CHAR = property.charAt(i);
+            if (i > 0 && Character.isUpperCase(CHAR) && !Character.isUpperCase(property.charAt(i - 1)))
+                KEY_BUILDER.append('_');
+
+            KEY_BUILDER.append(Character.toUpperCase(CHAR));
+        }
+
+        return KEY_BUILDER.toString();
+    }
+
+    /**
+     * Gets the number of slots that have been handed out to handles so far.
+     * @return the number of handles that exist.
+     */
+    /* package-private */ static int getSlotCount() {
+        return NEXT_SLOT.get();
+    }
+
+    /**
+     * Gets the name of the key.
+     * @return the name of the key.
+     */
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Gets the slot the handle is bound to.
+     * @return the index of the handle's slot.
+     */
+    /* package-private */ int getSlot() {
+        return SLOT;
+    }
+
+    @Override
+    public String toString() {
+        return NAME;
+    }
+
+    private final String NAME;
+    private final int SLOT;
+
+    private static final Map<String, ConfigurationKey> KEYS = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_SLOT = new AtomicInteger();
+}
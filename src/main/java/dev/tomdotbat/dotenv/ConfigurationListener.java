@@ -0,0 +1,33 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.util.Set;
+
+/**
+ * A listener that is notified whenever the settings of a Configuration change.
+ */
+@FunctionalInterface
+public interface ConfigurationListener {
+    /**
+     * Called after the Configuration's settings have changed, either by being reloaded or set.
+     * @param configuration the Configuration that changed.
+     * @param changedKeys the keys that were added, removed or given a different value.
+     */
+    void onChange(Configuration configuration, Set<String> changedKeys);
+}
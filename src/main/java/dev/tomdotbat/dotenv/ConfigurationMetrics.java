@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.time.Duration;
+
+/**
+ * Receives measurements of how a Configuration is used, set with {@link Configuration#setMetrics}.
+ * Every method does nothing by default, and a Configuration skips measuring entirely while it uses {@link #NONE}.
+ * Methods may be called from any thread, so implementations must be thread-safe, and should be cheap,
+ * as the lookup methods are called from the getters.
+ * @see CountingMetrics
+ */
+public interface ConfigurationMetrics {
+    /**
+     * Metrics that ignore every measurement, used by default.
+     */
+    ConfigurationMetrics NONE = new ConfigurationMetrics() {};
+
+    /**
+     * Called when a getter looks up a key.
+     * @param type the type of value the getter returns.
+     * @param found whether the key exists, if it doesn't then the lookup was a miss.
+     */
+    default void onLookup(ValueType type, boolean found) {}
+
+    /**
+     * Called when a getter returns its fallback, or an empty Optional, because the key was missing or invalid.
+     * @param type the type of value the getter returns.
+     */
+    default void onFallback(ValueType type) {}
+
+    /**
+     * Called when a getter finds a key whose value isn't in the right format for its type.
+     * @param type the type of value the getter returns.
+     */
+    default void onParseFailure(ValueType type) {}
+
+    /**
+     * Called after the Configuration has been loaded.
+     * @param duration how long the load took.
+     * @param bytes the number of bytes read from the Environment Files.
+     * @param keys the number of keys loaded.
+     */
+    default void onLoad(Duration duration, long bytes, int keys) {}
+
+    /**
+     * Called after a single layer of the Configuration has been reloaded, such as when a watched File changes.
+     * @param duration how long the reload took.
+     * @param bytes the number of bytes read from the Environment File.
+     * @param keys the number of keys whose value changed.
+     */
+    default void onReload(Duration duration, long bytes, int keys) {}
+
+    /**
+     * Called after the Configuration has been saved.
+     * @param duration how long the save took.
+     * @param bytes the number of bytes written to the Environment File.
+     * @param keys the number of keys saved.
+     */
+    default void onSave(Duration duration, long bytes, int keys) {}
+
+    /**
+     * The types of value returned by the getters of a Configuration.
+     */
+    enum ValueType {
+        STRING,
+        INTEGER,
+        LONG,
+        DOUBLE,
+        BOOLEAN,
+        DURATION,
+        BYTE_SIZE,
+        LIST
+    }
+}
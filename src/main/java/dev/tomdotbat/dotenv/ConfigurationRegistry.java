@@ -0,0 +1,162 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Holds a Configuration for every Environment File in a directory, such as one per tenant of a service.
+ * The Files are loaded in parallel, and the keys and values of every Configuration are interned in one shared pool,
+ * as Files like these tend to repeat the same keys and many of the same values.
+ * A File that fails to load is recorded rather than failing the others.
+ */
+public final class ConfigurationRegistry {
+    /**
+     * Loads every File in a directory on the common fork-join pool.
+     * @param directory the directory holding the Environment Files.
+     * @return the registry of loaded Configurations.
+     * @throws IOException if an error occurs when listing the directory.
+     */
+    public static ConfigurationRegistry load(Path directory) throws IOException {
+        return load(directory, "*");
+    }
+
+    /**
+     * Loads every File in a directory whose name matches a glob on the common fork-join pool.
+     * @param directory the directory holding the Environment Files.
+     * @param glob the glob to match the Files' names against, such as {@code *.env}.
+     * @return the registry of loaded Configurations.
+     * @throws IOException if an error occurs when listing the directory.
+     */
+    public static ConfigurationRegistry load(Path directory, String glob) throws IOException {
+        return load(directory, glob, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Loads every File in a directory whose name matches a glob on the given Executor.
+     * @param directory the directory holding the Environment Files.
+     * @param glob the glob to match the Files' names against, such as {@code *.env}.
+     * @param executor the Executor to load the Files on.
+     * @return the registry of loaded Configurations.
+     * @throws IOException if an error occurs when listing the directory.
+     */
+    public static ConfigurationRegistry load(Path directory, String glob, Executor executor) throws IOException {
+        final List<Path> PATHS = new ArrayList<>();
+
+        try (final DirectoryStream<Path> STREAM = Files.newDirectoryStream(directory, glob)) {
+            for (final Path PATH: STREAM)
+                if (Files.isRegularFile(PATH)) PATHS.add(PATH);
+        }
+
+        final StringPool STRING_POOL = new StringPool();
+        final List<CompletableFuture<Configuration>> FUTURES = new ArrayList<>(PATHS.size());
+
+        for (final Path PATH: PATHS) {
+            FUTURES.add(CompletableFuture.supplyAsync(() -> {
+                final Configuration CONFIGURATION = new Configuration(PATH, STRING_POOL);
+
+                try {
+                    CONFIGURATION.load();
+                }
+                catch (IOException ex) {
+                    throw new CompletionException(ex);
+                }
+
+                return CONFIGURATION;
+            }, executor));
+        }
+
+        final Map<Path, Configuration> CONFIGURATIONS = new HashMap<>();
+        final Map<Path, Exception> FAILURES = new HashMap<>();
+
+        for (int i = 0; i < PATHS.size(); i++) {
+            try {
+                CONFIGURATIONS.put(PATHS.get(i), FUTURES.get(i).join());
+            }
+            catch (CompletionException ex) {
+                final Throwable CAUSE = ex.getCause();
+                if (!(CAUSE instanceof Exception)) throw ex;
+
+                FAILURES.put(PATHS.get(i), (Exception) CAUSE);
+            }
+        }
+
+        return new ConfigurationRegistry(CONFIGURATIONS, FAILURES, STRING_POOL);
+    }
+
+    /**
+     * Creates a registry of loaded Configurations.
+     * @param configurations the Configurations by the path of their File.
+     * @param failures the reason each File that couldn't be loaded failed, by its path.
+     * @param stringPool the pool the Configurations' keys and values were interned in.
+     */
+    private ConfigurationRegistry(Map<Path, Configuration> configurations, Map<Path, Exception> failures, StringPool stringPool) {
+        CONFIGURATIONS = Collections.unmodifiableMap(configurations);
+        FAILURES = Collections.unmodifiableMap(failures);
+        STRING_POOL = stringPool;
+    }
+
+    /**
+     * Gets the Configuration loaded from a File.
+     * @param path the path of the File.
+     * @return the Configuration, or null if the File wasn't loaded.
+     */
+    public Configuration get(Path path) {
+        return CONFIGURATIONS.get(path);
+    }
+
+    /**
+     * Gets every Configuration that was loaded.
+     * @return the Configurations by the path of their File.
+     */
+    public Map<Path, Configuration> getConfigurations() {
+        return CONFIGURATIONS;
+    }
+
+    /**
+     * Gets the Files that couldn't be loaded.
+     * @return the Exception thrown when loading each File, by its path.
+     */
+    public Map<Path, Exception> getFailures() {
+        return FAILURES;
+    }
+
+    /**
+     * Gets the number of distinct keys and values shared between the Configurations.
+     * @return the size of the shared pool.
+     */
+    public int getPooledStringCount() {
+        return STRING_POOL.size();
+    }
+
+    private final Map<Path, Configuration> CONFIGURATIONS;
+    private final Map<Path, Exception> FAILURES;
+    private final StringPool STRING_POOL;
+}
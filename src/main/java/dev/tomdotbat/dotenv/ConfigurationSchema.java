@@ -0,0 +1,239 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import dev.tomdotbat.dotenv.exception.SchemaViolationException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Declares the keys a Configuration expects, with the type, range, pattern and default of each.
+ * <p>
+ * A schema set with {@link Configuration#setSchema(ConfigurationSchema)} is checked whenever settings are loaded,
+ * reporting every invalid setting at once rather than failing on the first one, or on the first read long after startup.
+ * Each declared value is converted to its type as it's checked, so the typed getters never have to parse it again.
+ * <pre>{@code
+ * final ConfigurationSchema SCHEMA = new ConfigurationSchema();
+ * SCHEMA.define("PORT", ValueType.INTEGER).range(1, 65535).defaultValue("8080");
+ * SCHEMA.define("DATABASE_URL", ValueType.STRING).pattern("jdbc:.+").required();
+ * }</pre>
+ * A schema should be fully declared before it is set, as it isn't safe to change while a Configuration is loading.
+ */
+public final class ConfigurationSchema {
+    /**
+     * Declares a key of the schema, replacing any rule it already had.
+     * @param key the key to declare.
+     * @param type the type of value the key holds.
+     * @return the rule of the key, to add constraints to.
+     */
+    public Rule define(String key, ConfigurationMetrics.ValueType type) {
+        final Rule RULE = new Rule(Objects.requireNonNull(key), Objects.requireNonNull(type));
+        RULES.put(key, RULE);
+
+        return RULE;
+    }
+
+    /**
+     * Gets the default value of every key that has one.
+     * @return the default value of each key.
+     */
+    /* package-private */ Map<String, String> getDefaults() {
+        final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+        for (final Rule RULE: RULES.values())
+            if (RULE.defaultValue != null) DEFAULTS.put(RULE.KEY, RULE.defaultValue);
+
+        return DEFAULTS;
+    }
+
+    /**
+     * Checks the settings of a snapshot against every rule, parsing each declared value into its type.
+     * @param SNAPSHOT the snapshot to check.
+     * @throws SchemaViolationException if any setting breaks a rule, listing every violation.
+     */
+    /* package-private */ void check(final Snapshot SNAPSHOT) {
+        final List<String> VIOLATIONS = new ArrayList<>();
+        for (final Rule RULE: RULES.values())
+            RULE.check(SNAPSHOT, VIOLATIONS);
+
+        if (!VIOLATIONS.isEmpty()) throw new SchemaViolationException(VIOLATIONS);
+    }
+
+    private final Map<String, Rule> RULES = new LinkedHashMap<>();
+
+    /**
+     * The constraints on a single key of the schema. Each constraint replaces any earlier one of the same kind.
+     */
+    public static final class Rule {
+        private Rule(final String KEY, final ConfigurationMetrics.ValueType TYPE) {
+            this.KEY = KEY;
+            this.TYPE = TYPE;
+            PARSER = ValueParsers.forType(TYPE);
+        }
+
+        /**
+         * Requires the key to be set, unless it has a default value.
+         * @return this rule.
+         */
+        public Rule required() {
+            required = true;
+            return this;
+        }
+
+        /**
+         * Limits a numeric key to a range of values, including both ends.
+         * @param min the lowest value allowed.
+         * @param max the highest value allowed.
+         * @return this rule.
+         * @throws IllegalArgumentException if the key isn't an integer, long, double or byte size, or the range is empty.
+         */
+        public Rule range(double min, double max) {
+            if (TYPE != ConfigurationMetrics.ValueType.INTEGER && TYPE != ConfigurationMetrics.ValueType.LONG
+                    && TYPE != ConfigurationMetrics.ValueType.DOUBLE && TYPE != ConfigurationMetrics.ValueType.BYTE_SIZE)
+                throw new IllegalArgumentException("A numeric range can't be applied to the " + TYPE + " key " + KEY + ".");
+
+            if (!(min <= max)) throw new IllegalArgumentException("The range of " + KEY + " is empty.");
+
+            this.min = min;
+            this.max = max;
+            return this;
+        }
+
+        /**
+         * Limits a duration key to a range of durations, including both ends.
+         * @param min the shortest duration allowed.
+         * @param max the longest duration allowed.
+         * @return this rule.
+         * @throws IllegalArgumentException if the key isn't a duration, or the range is empty.
+         */
+        public Rule range(Duration min, Duration max) {
+            if (TYPE != ConfigurationMetrics.ValueType.DURATION)
+                throw new IllegalArgumentException("A duration range can't be applied to the " + TYPE + " key " + KEY + ".");
+
+            if (min.compareTo(max) > 0) throw new IllegalArgumentException("The range of " + KEY + " is empty.");
+
+            minDuration = min;
+            maxDuration = max;
+            return this;
+        }
+
+        /**
+         * Requires the whole String value of the key, with its references expanded, to match a regular expression.
+         * @param regex the regular expression to match.
+         * @return this rule.
+         * @throws java.util.regex.PatternSyntaxException if the regular expression is invalid.
+         */
+        public Rule pattern(String regex) {
+            pattern = Pattern.compile(regex);
+            return this;
+        }
+
+        /**
+         * Sets the value used when the key isn't set by any layer, which is checked against the rule like any other.
+         * @param value the default value of the key.
+         * @return this rule.
+         */
+        public Rule defaultValue(String value) {
+            defaultValue = Objects.requireNonNull(value);
+            return this;
+        }
+
+        /**
+         * Checks the key's setting in a snapshot, leaving its Value holding the parsed result if it is valid.
+         * @param SNAPSHOT the snapshot to check.
+         * @param VIOLATIONS the list to add a description of any violation to.
+         */
+        private void check(final Snapshot SNAPSHOT, final List<String> VIOLATIONS) {
+            final Value VALUE;
+            try {
+                VALUE = SNAPSHOT.get(KEY);
+            }
+            catch (IllegalStateException ex) {
+                VIOLATIONS.add(KEY + ": " + ex.getMessage());
+                return;
+            }
+
+            if (VALUE == null) {
+                if (required) VIOLATIONS.add(KEY + ": is required but isn't set.");
+                return;
+            }
+
+            //Describe encrypted values without quoting them, so the report never leaks a secret.
+            final String STRING = VALUE.getString();
+            final String SHOWN = VALUE.isEncrypted() ? "The encrypted value" : "\"" + STRING + "\"";
+
+            if (pattern != null && !pattern.matcher(STRING).matches()) {
+                VIOLATIONS.add(KEY + ": " + SHOWN + " doesn't match the pattern " + pattern.pattern() + ".");
+                return;
+            }
+
+            if (PARSER == null) return;
+
+            final Object RESULT;
+            try {
+                RESULT = VALUE.get(PARSER, false);
+            }
+            catch (Exception ex) {
+                VIOLATIONS.add(KEY + ": " + SHOWN + " isn't a valid " + TYPE.name().toLowerCase(Locale.ROOT).replace('_', ' ') + ".");
+                return;
+            }
+
+            if (RESULT instanceof Duration && minDuration != null) {
+                final Duration DURATION = (Duration) RESULT;
+                if (DURATION.compareTo(minDuration) < 0 || DURATION.compareTo(maxDuration) > 0)
+                    VIOLATIONS.add(KEY + ": " + SHOWN + " is outside the range " + minDuration + " to " + maxDuration + ".");
+            }
+            else if (RESULT instanceof Number) {
+                final double NUMBER = ((Number) RESULT).doubleValue();
+                if (NUMBER < min || NUMBER > max)
+                    VIOLATIONS.add(KEY + ": " + SHOWN + " is outside the range " + formatBound(min) + " to " + formatBound(max) + ".");
+            }
+        }
+
+        /**
+         * Formats one end of a numeric range, without a fraction if it is a whole number.
+         * @param bound the end of the range.
+         * @return the formatted bound.
+         */
+        private static String formatBound(double bound) {
+            return bound == Math.rint(bound) && Math.abs(bound) < 1e15 ? String.valueOf((long) bound) : String.valueOf(bound);
+        }
+
+        private final String KEY;
+        private final ConfigurationMetrics.ValueType TYPE;
+
+        /**
+         * The parser of the key's type, or null if the key is a String.
+         */
+        private final ValueParser<?, ?> PARSER;
+
+        private boolean required;
+        private double min = Double.NEGATIVE_INFINITY;
+        private double max = Double.POSITIVE_INFINITY;
+        private Duration minDuration;
+        private Duration maxDuration;
+        private Pattern pattern;
+        private String defaultValue;
+    }
+}
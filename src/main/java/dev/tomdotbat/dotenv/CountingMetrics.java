@@ -0,0 +1,149 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics that count the lookups, misses, fallbacks and parse failures of each type of getter, and the loads,
+ * reloads and saves of the Configuration. Counts are kept in striped {@link LongAdder}s,
+ * so getters called from many threads at once don't contend on a single counter.
+ */
+public final class CountingMetrics implements ConfigurationMetrics {
+    @Override
+    public void onLookup(ValueType type, boolean found) {
+        LOOKUPS[type.ordinal()].increment();
+        if (!found) MISSES[type.ordinal()].increment();
+    }
+
+    @Override
+    public void onFallback(ValueType type) {
+        FALLBACKS[type.ordinal()].increment();
+    }
+
+    @Override
+    public void onParseFailure(ValueType type) {
+        PARSE_FAILURES[type.ordinal()].increment();
+    }
+
+    @Override
+    public void onLoad(Duration duration, long bytes, int keys) {
+        LOADS.increment();
+        LOAD_NANOS.add(duration.toNanos());
+    }
+
+    @Override
+    public void onReload(Duration duration, long bytes, int keys) {
+        RELOADS.increment();
+    }
+
+    @Override
+    public void onSave(Duration duration, long bytes, int keys) {
+        SAVES.increment();
+    }
+
+    /**
+     * Gets the number of times a type of getter has looked up a key.
+     * @param type the type of value the getter returns.
+     * @return the number of lookups.
+     */
+    public long getLookups(ValueType type) {
+        return LOOKUPS[type.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of times a type of getter has looked up a key that doesn't exist.
+     * @param type the type of value the getter returns.
+     * @return the number of misses.
+     */
+    public long getMisses(ValueType type) {
+        return MISSES[type.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of times a type of getter has returned its fallback or an empty Optional.
+     * @param type the type of value the getter returns.
+     * @return the number of fallbacks.
+     */
+    public long getFallbacks(ValueType type) {
+        return FALLBACKS[type.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of times a type of getter has found a value that isn't in the right format.
+     * @param type the type of value the getter returns.
+     * @return the number of parse failures.
+     */
+    public long getParseFailures(ValueType type) {
+        return PARSE_FAILURES[type.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of times the Configuration has been loaded.
+     * @return the number of loads.
+     */
+    public long getLoads() {
+        return LOADS.sum();
+    }
+
+    /**
+     * Gets the total time spent loading the Configuration.
+     * @return the total duration of every load.
+     */
+    public Duration getLoadTime() {
+        return Duration.ofNanos(LOAD_NANOS.sum());
+    }
+
+    /**
+     * Gets the number of times a layer of the Configuration has been reloaded.
+     * @return the number of reloads.
+     */
+    public long getReloads() {
+        return RELOADS.sum();
+    }
+
+    /**
+     * Gets the number of times the Configuration has been saved.
+     * @return the number of saves.
+     */
+    public long getSaves() {
+        return SAVES.sum();
+    }
+
+    /**
+     * Creates a counter for each type of getter.
+     * @return the counters, indexed by the ordinal of the type.
+     */
+    private static LongAdder[] createCounters() {
+        final LongAdder[] COUNTERS = new LongAdder[ValueType.values().length];
+        for (int i = 0; i < COUNTERS.length; i++) COUNTERS[i] = new LongAdder();
+
+        return COUNTERS;
+    }
+
+    private final LongAdder[] LOOKUPS = createCounters();
+    private final LongAdder[] MISSES = createCounters();
+    private final LongAdder[] FALLBACKS = createCounters();
+    private final LongAdder[] PARSE_FAILURES = createCounters();
+
+    private final LongAdder LOADS = new LongAdder();
+    private final LongAdder LOAD_NANOS = new LongAdder();
+    private final LongAdder RELOADS = new LongAdder();
+    private final LongAdder SAVES = new LongAdder();
+}
@@ -0,0 +1,104 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks which keys reference each key, so only the values depending on a changed key need to be resolved again.
+ * Not thread-safe, the Configuration only accesses it while holding its write lock.
+ */
+/* package-private */ final class DependencyGraph {
+    /**
+     * Creates a graph of the references between the given settings.
+     * @param values the settings.
+     * @param ignoreCase whether references find keys ignoring case, as they do while the Configuration's keys are case-insensitive.
+     */
+    public DependencyGraph(Map<String, Value> values, boolean ignoreCase) {
+        IGNORE_CASE = ignoreCase;
+
+        for (final Map.Entry<String, Value> ENTRY: values.entrySet())
+            update(ENTRY.getKey(), null, ENTRY.getValue());
+    }
+
+    /**
+     * Replaces the references of a key after its Value changes.
+     * @param key the key that changed.
+     * @param previous the key's previous Value, or null if it didn't have one.
+     * @param value the key's new Value, or null if it was removed.
+     */
+    public void update(String key, Value previous, Value value) {
+        if (previous != null) {
+            for (final String REFERENCE: previous.getReferences()) {
+                final String REFERENCED_KEY = normalize(REFERENCE);
+                final Set<String> DEPENDENTS = DEPENDENTS_BY_KEY.get(REFERENCED_KEY);
+                if (DEPENDENTS != null && DEPENDENTS.remove(key) && DEPENDENTS.isEmpty())
+                    DEPENDENTS_BY_KEY.remove(REFERENCED_KEY);
+            }
+        }
+
+        if (value != null) {
+            for (final String REFERENCE: value.getReferences())
+                DEPENDENTS_BY_KEY.computeIfAbsent(normalize(REFERENCE), reference -> new HashSet<>()).add(key);
+        }
+    }
+
+    /**
+     * Gets every key that depends on the given keys, directly or through other keys.
+     * @param keys the keys that changed.
+     * @return the dependent keys, which won't include the given keys unless they refer back to themselves.
+     */
+    public Set<String> getDependents(Collection<String> keys) {
+        final Set<String> DEPENDENTS = new HashSet<>();
+        if (DEPENDENTS_BY_KEY.isEmpty()) return DEPENDENTS;
+
+        final Deque<String> PENDING = new ArrayDeque<>(keys);
+
+        while (!PENDING.isEmpty()) {
+            final Set<String> DIRECT_DEPENDENTS = DEPENDENTS_BY_KEY.get(normalize(PENDING.poll()));
+            if (DIRECT_DEPENDENTS == null) continue;
+
+            for (final String DEPENDENT: DIRECT_DEPENDENTS)
+                if (DEPENDENTS.add(DEPENDENT)) PENDING.add(DEPENDENT);
+        }
+
+        return DEPENDENTS;
+    }
+
+    /**
+     * Gets the form of a key that the graph is indexed by, which is upper-cased while references find keys ignoring case.
+     * @param key the key or reference.
+     * @return the key to index the graph by.
+     */
+    private String normalize(String key) {
+        return IGNORE_CASE ? key.toUpperCase() : key;
+    }
+
+    private final boolean IGNORE_CASE;
+
+    /**
+     * The keys that directly reference each key, indexed by the referenced key as it is normalized.
+     */
+    private final Map<String, Set<String>> DEPENDENTS_BY_KEY = new HashMap<>();
+}
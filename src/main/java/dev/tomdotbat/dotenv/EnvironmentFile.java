@@ -19,22 +19,45 @@ package dev.tomdotbat.dotenv;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
 
 /**
  * Represents the Environment File of the application.
  */
 /* package-private */ final class EnvironmentFile {
+    /**
+     * Creates an Environment File that is located automatically the first time it is used.
+     * @see #locate()
+     */
+    public EnvironmentFile() {}
+
     /**
      * Creates an Environment File from the given File.
      * @param file the Environment File.
      */
     public EnvironmentFile(File file) {
-        this.FILE = file;
+        this.file = file;
     }
 
     /**
@@ -45,141 +68,453 @@ import java.util.Map;
         this(new File(path.toString()));
     }
 
+    /**
+     * Gets the path of the Environment File.
+     * @return the path of the Environment File.
+     */
+    public Path getPath() {
+        return getFile().toPath();
+    }
+
     /**
      * Loads the settings from the Environment File.
+     * The File is streamed through a bounded buffer, or memory-mapped if it is larger than {@link #MAPPING_THRESHOLD},
+     * so the whole text is never held on the heap at once.
      * @return a HashMap containing the File's key-value paired settings.
      * @throws IOException if an error occurs when reading the File.
      */
     public Map<String, String> load() throws IOException {
         final Map<String, String> SETTINGS = new HashMap<>();
+        load((key, value, literal) -> SETTINGS.put(key, value));
 
-        //Read each setting line-by-line, stripping declarator characters if any.
-        for (final String LINE: spiltTextByLines(Files.readString(FILE.toPath()))) {
-            final String[] KV_PAIR = stripComment(LINE).split(KV_SEPARATOR, 2);
-            if (KV_PAIR.length < 2) continue;
+        return SETTINGS;
+    }
 
-            SETTINGS.put(KV_PAIR[0].trim().toUpperCase(), extractValue(KV_PAIR[1]));
+    /**
+     * Loads the settings from the Environment File, passing each one to the consumer as it is parsed.
+     * @param CONSUMER the consumer to pass each upper-cased key and its value to.
+     * @return the size of the File in bytes.
+     * @throws IOException if an error occurs when reading the File.
+     */
+    public long load(final EnvironmentParser.SettingConsumer CONSUMER) throws IOException {
+        //The modification time is taken before reading, so a write during the read is seen as a change next time.
+        final long MODIFIED_TIME;
+        try {
+            MODIFIED_TIME = Files.getLastModifiedTime(getFile().toPath()).toMillis();
+        }
+        catch (NoSuchFileException ex) {
+            stamp = Stamp.MISSING;
+            throw ex;
         }
 
-        return SETTINGS;
+        if (!compiledCacheEnabled) {
+            final CRC32C CHECKSUM = new CRC32C();
+
+            try (final FileChannel CHANNEL = FileChannel.open(getFile().toPath(), StandardOpenOption.READ)) {
+                read(CHANNEL, CONSUMER, CHECKSUM);
+                stamp = new Stamp(CHANNEL.size(), MODIFIED_TIME, CHECKSUM.getValue());
+
+                return CHANNEL.size();
+            }
+        }
+
+        final Path CACHE_PATH = getCompiledCachePath();
+        final long CACHED_SIZE = CompiledCache.read(getFile().toPath(), CACHE_PATH, CONSUMER);
+
+        if (CACHED_SIZE >= 0) {
+            //The cache has already checked the contents, but doesn't pass their checksum back.
+            stamp = new Stamp(CACHED_SIZE, MODIFIED_TIME, Stamp.UNKNOWN_CHECKSUM);
+            return CACHED_SIZE;
+        }
+
+        //The compiled cache is missing or stale, so parse the text and record what was read to rebuild it.
+        final List<String> ENTRIES = new ArrayList<>();
+        final BitSet LITERALS = new BitSet();
+        final CRC32C CHECKSUM = new CRC32C();
+        final long SIZE;
+
+        try (final FileChannel CHANNEL = FileChannel.open(getFile().toPath(), StandardOpenOption.READ)) {
+            SIZE = CHANNEL.size();
+            read(CHANNEL, (key, value, literal) -> {
+                if (literal) LITERALS.set(ENTRIES.size() / 2);
+
+                ENTRIES.add(key);
+                ENTRIES.add(value);
+                CONSUMER.accept(key, value, literal);
+            }, CHECKSUM);
+        }
+
+        stamp = new Stamp(SIZE, MODIFIED_TIME, CHECKSUM.getValue());
+
+        try {
+            CompiledCache.write(CACHE_PATH, SIZE, MODIFIED_TIME, CHECKSUM.getValue(), ENTRIES, LITERALS);
+        }
+        catch (IOException | RuntimeException ignored) {}
+
+        return SIZE;
     }
 
     /**
-     * Saves the settings to the Environment File.
-     * @param SETTINGS the settings as a HashMap.
-     * @throws IOException if an error occurs when writing to the File.
+     * Returns whether the Environment File may have changed since it was last loaded or saved, by comparing its size and modification time.
+     * A File that has never been loaded is always considered changed.
+     * @param compareContents whether a File with a different size or modification time should also have its contents hashed,
+     *                        so a File that was rewritten with the same text isn't considered changed.
+     * @return true if the File should be loaded again.
+     * @throws IOException if an error occurs when reading the File's attributes or contents.
      */
-    public void save(final Map<String, String> SETTINGS) throws IOException {
-        if (!FILE.canWrite())
-            throw new IOException("Insufficient permission to write to the Environment File.");
+    public boolean isChanged(boolean compareContents) throws IOException {
+        final Stamp LOADED = stamp;
+        if (LOADED == null) return true;
+
+        final BasicFileAttributes ATTRIBUTES;
+        try {
+            ATTRIBUTES = Files.readAttributes(getFile().toPath(), BasicFileAttributes.class);
+        }
+        catch (NoSuchFileException ex) {
+            return LOADED != Stamp.MISSING;
+        }
+
+        final long MODIFIED_TIME = ATTRIBUTES.lastModifiedTime().toMillis();
+        if (LOADED != Stamp.MISSING && ATTRIBUTES.size() == LOADED.SIZE && MODIFIED_TIME == LOADED.MODIFIED_TIME) return false;
+        if (!compareContents || LOADED.CHECKSUM == Stamp.UNKNOWN_CHECKSUM || ATTRIBUTES.size() != LOADED.SIZE) return true;
+
+        final CRC32C CHECKSUM = new CRC32C();
+        try (final FileChannel CHANNEL = FileChannel.open(getFile().toPath(), StandardOpenOption.READ)) {
+            CHECKSUM.update(CHANNEL.map(FileChannel.MapMode.READ_ONLY, 0, CHANNEL.size()));
+        }
 
-        final Map<String, String> SETTINGS_TO_SAVE = new HashMap<>(SETTINGS);
-        final StringBuilder FILE_TEXT_BUILDER = new StringBuilder();
+        if (CHECKSUM.getValue() != LOADED.CHECKSUM) return true;
 
-        final String NEW_LINE = "\n";
-        final String SPACE = " ";
+        //Remember the new modification time, so the next check doesn't need to hash the File again.
+        stamp = new Stamp(LOADED.SIZE, MODIFIED_TIME, LOADED.CHECKSUM);
+        return false;
+    }
 
-        //Replace the existing settings in the File with their new values.
-        for (final String LINE: spiltTextByLines(Files.readString(FILE.toPath()))) {
-            final String[] KV_PAIR = stripComment(LINE).split(KV_SEPARATOR, 2);
-            if (KV_PAIR.length < 2) {
-                FILE_TEXT_BUILDER.append(LINE).append(NEW_LINE);
+    /**
+     * Sets whether a compiled binary copy of the settings is kept beside the Environment File, named after it with a
+     * {@code .compiled} suffix. While the File is unchanged, loading reads the compiled copy rather than parsing the text.
+     * @param enabled true to use the compiled cache.
+     */
+    public void setCompiledCacheEnabled(boolean enabled) {
+        compiledCacheEnabled = enabled;
+    }
+
+    /**
+     * Gets the path of the compiled cache kept beside the Environment File.
+     * @return the path of the compiled cache.
+     */
+    public Path getCompiledCachePath() {
+        final Path PATH = getFile().toPath().toAbsolutePath();
+        return PATH.resolveSibling(PATH.getFileName() + ".compiled");
+    }
+
+    /**
+     * Saves changed settings to the Environment File.
+     * Only the lines of the given settings are rewritten, every other line and comment is copied across untouched,
+     * and settings that aren't in the File yet are added to the end. Every line of a key that appears more than once is rewritten,
+     * as the last one is the one that is loaded.
+     * The new text is written to a temporary file which then replaces the File in a single atomic move,
+     * so a crash part way through can never leave the File truncated.
+     * @param SETTINGS the changed settings as a HashMap.
+     * @return the number of bytes written.
+     * @throws IOException if an error occurs when writing to the File.
+     * @throws IllegalArgumentException if a value can't be written so that it is read back the same, see {@link #formatValue}.
+     */
+    public long save(final Map<String, String> SETTINGS) throws IOException {
+        if (!getFile().canWrite())
+            throw new IOException("Insufficient permission to write to the Environment File.");
+
+        //Every value is formatted before anything is read, so a value that can't be written leaves the File untouched.
+        final Map<String, String> SETTINGS_TO_SAVE = new HashMap<>();
+        for (final Map.Entry<String, String> ENTRY: SETTINGS.entrySet())
+            SETTINGS_TO_SAVE.put(ENTRY.getKey(), formatValue(ENTRY.getKey(), ENTRY.getValue()));
+
+        //Changes made by something else since the last load must still be seen by the next check after saving.
+        final boolean UNCHANGED = !isChanged(false);
+        final String TEXT = Files.readString(getFile().toPath());
+        final StringBuilder FILE_TEXT_BUILDER = new StringBuilder(TEXT.length() + 64);
+        final EnvironmentParser.Line LINE = new EnvironmentParser.Line();
+        final Set<String> WRITTEN_KEYS = new HashSet<>();
+
+        //Replace the values of the changed settings in place.
+        for (int position = 0; position < TEXT.length(); position = LINE.next) {
+            final boolean IS_SETTING = EnvironmentParser.scanLine(TEXT, position, TEXT.length(), true, false, LINE);
+            final String KEY = IS_SETTING ? TEXT.substring(LINE.keyStart, LINE.keyEnd).toUpperCase() : null;
+
+            if (KEY == null || !SETTINGS_TO_SAVE.containsKey(KEY)) {
+                FILE_TEXT_BUILDER.append(TEXT, LINE.start, LINE.next);
                 continue;
             }
 
-            final String KEY = KV_PAIR[0];
-            if (!SETTINGS_TO_SAVE.containsKey(KEY)) continue;
-
-            FILE_TEXT_BUILDER.append(KEY).append(KV_SEPARATOR).append(SETTINGS_TO_SAVE.get(KEY));
+            FILE_TEXT_BUILDER.append(TEXT, LINE.start, LINE.keyEnd).append(KV_SEPARATOR).append(SETTINGS_TO_SAVE.get(KEY));
+            WRITTEN_KEYS.add(KEY);
 
-            final String COMMENT = getComment(LINE);
-            if (COMMENT == null) FILE_TEXT_BUILDER.append(NEW_LINE);
-            else FILE_TEXT_BUILDER.append(SPACE).append(COMMENT_DECLARATOR).append(COMMENT);
+            if (LINE.commentStart >= 0)
+                FILE_TEXT_BUILDER.append(' ').append(TEXT, LINE.commentStart, LINE.end);
 
-            SETTINGS_TO_SAVE.remove(KEY);
+            FILE_TEXT_BUILDER.append(TEXT, LINE.end, LINE.next);
         }
 
         //Add any new settings to the end of the file.
-        if (SETTINGS_TO_SAVE.size() > 0) {
-            FILE_TEXT_BUILDER.append(NEW_LINE);
+        if (WRITTEN_KEYS.size() < SETTINGS_TO_SAVE.size()) {
+            final int LENGTH = FILE_TEXT_BUILDER.length();
+            if (LENGTH > 0 && FILE_TEXT_BUILDER.charAt(LENGTH - 1) != '\n' && FILE_TEXT_BUILDER.charAt(LENGTH - 1) != '\r')
+                FILE_TEXT_BUILDER.append('\n');
 
             for (final Map.Entry<String, String> ENTRY: SETTINGS_TO_SAVE.entrySet())
-                FILE_TEXT_BUILDER.append(ENTRY.getKey()).append(KV_SEPARATOR).append(ENTRY.getValue()).append(NEW_LINE);
+                if (!WRITTEN_KEYS.contains(ENTRY.getKey()))
+                    FILE_TEXT_BUILDER.append(ENTRY.getKey()).append(KV_SEPARATOR).append(ENTRY.getValue()).append('\n');
         }
 
-        Files.writeString(FILE.toPath(), FILE_TEXT_BUILDER.toString());
+        return write(FILE_TEXT_BUILDER, UNCHANGED);
     }
 
     /**
-     * Splits a String into an array of each line it contains.
-     * @param TEXT the String to split.
-     * @return an array of lines in the String.
+     * Decodes the channel's UTF-8 text incrementally, parsing each complete setting as soon as it has been decoded.
+     * @param CHANNEL the channel to read the Environment File from.
+     * @param CONSUMER the consumer to pass each key-value pair to.
+     * @param CHECKSUM a checksum to update with every byte read, or null.
+     * @throws IOException if an error occurs when reading or decoding the File.
      */
-    private String[] spiltTextByLines(final String TEXT) {
-        return TEXT.replaceAll("\r", "").split("\n");
+    private void read(final FileChannel CHANNEL, final EnvironmentParser.SettingConsumer CONSUMER, final Checksum CHECKSUM) throws IOException {
+        final long SIZE = CHANNEL.size();
+        final boolean MAPPED = SIZE >= MAPPING_THRESHOLD && SIZE <= Integer.MAX_VALUE;
+
+        final ByteBuffer BYTES = MAPPED ? CHANNEL.map(FileChannel.MapMode.READ_ONLY, 0, SIZE) : ByteBuffer.allocate(BUFFER_SIZE).flip();
+        final CharsetDecoder DECODER = StandardCharsets.UTF_8.newDecoder();
+
+        final EnvironmentParser PARSER = new EnvironmentParser(EnvironmentParser.toVisitor(CONSUMER), false);
+
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        CoderResult result = CoderResult.UNDERFLOW;
+        boolean endOfInput = MAPPED;
+
+        if (MAPPED && CHECKSUM != null) CHECKSUM.update(BYTES.duplicate());
+
+        while (true) {
+            //Only read more bytes once the decoder has used up the ones it already has.
+            if (result.isUnderflow() && !endOfInput) {
+                BYTES.compact();
+                final int READ_START = BYTES.position();
+
+                endOfInput = CHANNEL.read(BYTES) < 0;
+                if (CHECKSUM != null) CHECKSUM.update(BYTES.duplicate().flip().position(READ_START));
+
+                BYTES.flip();
+            }
+
+            result = DECODER.decode(BYTES, chars, endOfInput);
+            if (result.isError()) result.throwException();
+
+            final boolean FINISHED = endOfInput && result.isUnderflow();
+            if (FINISHED) DECODER.flush(chars);
+
+            chars.flip();
+            chars.position(chars.position() + PARSER.parse(chars, FINISHED));
+
+            if (FINISHED) return;
+
+            //Move unparsed text to the start of the buffer, growing it if a single setting filled it, or leave it where it is if nothing was parsed.
+            if (chars.position() > 0)
+                chars.compact();
+            else if (chars.limit() == chars.capacity())
+                chars = CharBuffer.allocate(chars.capacity() * 2).put(chars);
+            else
+                chars.position(chars.limit()).limit(chars.capacity());
+        }
     }
 
     /**
-     * Removes the comment from the line of text provided if one exists.
-     * @param TEXT the line of text to strip the comment from.
-     * @return the line of text with the comment removed.
+     * Writes text to a temporary file beside the Environment File, then moves it over the File in one step.
+     * @param TEXT the new text of the File.
+     * @param UPDATE_STAMP whether the written text should be treated as loaded, so it isn't seen as a change.
+     * @return the number of bytes written.
+     * @throws IOException if an error occurs when writing or moving the temporary file.
      */
-    private String stripComment(final String TEXT) {
-        final String[] SPLIT_TEXT = TEXT.split(COMMENT_DECLARATOR);
+    private long write(final CharSequence TEXT, final boolean UPDATE_STAMP) throws IOException {
+        final ByteBuffer BYTES = StandardCharsets.UTF_8.encode(CharBuffer.wrap(TEXT));
+        final int SIZE = BYTES.remaining();
+
+        final CRC32C CHECKSUM = new CRC32C();
+        CHECKSUM.update(BYTES.duplicate());
 
-        if (SPLIT_TEXT.length < 2)
-            return TEXT;
+        writeAtomically(getFile().toPath(), BYTES);
 
-        if (SPLIT_TEXT.length == 2)
-            return SPLIT_TEXT[0];
+        if (UPDATE_STAMP)
+            stamp = new Stamp(SIZE, Files.getLastModifiedTime(getFile().toPath()).toMillis(), CHECKSUM.getValue());
 
-        return Arrays.toString(Arrays.copyOfRange(SPLIT_TEXT, 0, SPLIT_TEXT.length - 2));
+        return SIZE;
     }
 
     /**
-     * Gets the comment from a line of text if it exists.
-     * @param TEXT the text to get the comment from.
-     * @return the comment in the text, null if there isn't one.
+     * Writes bytes to a temporary file beside the given path, then moves it over the path in one step,
+     * so a crash part way through can never leave the file truncated.
+     * @param PATH the path of the file to replace.
+     * @param BYTES the new contents of the file.
+     * @throws IOException if an error occurs when writing or moving the temporary file.
      */
-    private String getComment(final String TEXT) {
-        final String[] SPLIT_TEXT = TEXT.split(COMMENT_DECLARATOR);
-        return SPLIT_TEXT.length < 2 ? null : SPLIT_TEXT[SPLIT_TEXT.length - 1];
+    /* package-private */ static void writeAtomically(final Path PATH, final ByteBuffer BYTES) throws IOException {
+        final Path ABSOLUTE_PATH = PATH.toAbsolutePath();
+        final Path TEMPORARY_PATH = Files.createTempFile(ABSOLUTE_PATH.getParent(), ABSOLUTE_PATH.getFileName().toString(), ".tmp");
+
+        try {
+            //Temporary files are created private to the owner, so carry the file's own permissions over.
+            if (Files.exists(ABSOLUTE_PATH)) {
+                try {
+                    Files.setPosixFilePermissions(TEMPORARY_PATH, Files.getPosixFilePermissions(ABSOLUTE_PATH));
+                }
+                catch (UnsupportedOperationException ignored) {}
+            }
+
+            try (final FileChannel CHANNEL = FileChannel.open(TEMPORARY_PATH, StandardOpenOption.WRITE)) {
+                while (BYTES.hasRemaining()) CHANNEL.write(BYTES);
+                CHANNEL.force(true);
+            }
+
+            try {
+                Files.move(TEMPORARY_PATH, ABSOLUTE_PATH, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException ex) {
+                Files.move(TEMPORARY_PATH, ABSOLUTE_PATH, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(TEMPORARY_PATH);
+            throw ex;
+        }
+    }
+
+    /**
+     * Formats a value to be written to the Environment File, quoting it if it wouldn't be read back the same otherwise.
+     * Values are double-quoted where possible, or single-quoted if they don't reference other keys,
+     * as single-quoted values aren't expanded. Every setting is a single line and backslashes are kept as they are,
+     * so a value holding a line break can't be written, and nor can one where every quote would be followed by a comment.
+     * @param KEY the key of the value, for the error message.
+     * @param VALUE the value to format.
+     * @return the value as it should appear in the File.
+     * @throws IllegalArgumentException if the value can't be written so that it is read back the same.
+     */
+    /* package-private */ static String formatValue(final String KEY, final String VALUE) {
+        if (VALUE.indexOf('\n') >= 0 || VALUE.indexOf('\r') >= 0)
+            throw new IllegalArgumentException("The value of the key \"" + KEY + "\" can't be saved, as it holds a line break.");
+
+        if (VALUE.isEmpty()) return VALUE;
+
+        final char FIRST = VALUE.charAt(0);
+        final boolean NEEDS_QUOTES = VALUE.indexOf(COMMENT_DECLARATOR) >= 0 || FIRST <= ' ' || VALUE.charAt(VALUE.length() - 1) <= ' '
+                || FIRST == '"' || FIRST == '\'';
+
+        if (!NEEDS_QUOTES) return VALUE;
+        if (canQuote(VALUE, '"')) return '"' + VALUE + '"';
+        if (canQuote(VALUE, '\'') && !Interpolation.needsExpanding(VALUE)) return '\'' + VALUE + '\'';
+
+        throw new IllegalArgumentException("The value of the key \"" + KEY + "\" can't be saved, as no quotes would keep its comment characters in the value.");
     }
 
     /**
-     * Gets the text between a pair of given characters.
-     * @param TEXT the text to extract from.
-     * @param CHAR the character to use as the pair around the text.
-     * @return the text between the char pair, null if the chars aren't present.
+     * Returns whether a value can be written between a pair of quotes, which is only
+     * when none of the same quotes within it are followed by a comment, as that quote would be taken as the closing one.
+     * @param VALUE the value to quote.
+     * @param QUOTE the quote to write around the value.
+     * @return true if the quoted value would be read back the same.
      */
-    private String getTextBetweenCharPair(final String TEXT, final char CHAR) {
-        if (TEXT.charAt(0) != CHAR)
-            return null;
+    private static boolean canQuote(final String VALUE, final char QUOTE) {
+        for (int i = VALUE.indexOf(QUOTE); i >= 0; i = VALUE.indexOf(QUOTE, i + 1)) {
+            int next = i + 1;
+            while (next < VALUE.length() && VALUE.charAt(next) <= ' ') next++;
 
-        if (TEXT.charAt(TEXT.length() - 1) != CHAR)
-            return null;
+            if (next < VALUE.length() && VALUE.charAt(next) == COMMENT_DECLARATOR) return false;
+        }
+
+        return true;
+    }
 
-        return TEXT.substring(1, TEXT.length() - 1);
+    /**
+     * Gets the File, locating it if this is the first time it has been used.
+     * @return the Environment File.
+     */
+    private File getFile() {
+        File located = file;
+        if (located != null) return located;
+
+        synchronized (this) {
+            if (file == null) file = locate();
+            return file;
+        }
     }
 
     /**
-     * Extracts the value from a String of text.
-     * @param TEXT the text to extract from.
-     * @return the extracted value.
+     * Locates the Environment File, firstly by looking in the working directory, then working up until it is found or the limit is reached.
+     * If no Environment File is found, it will attempt to create one in the working directory.
+     * @return the Environment File.
      */
-    private String extractValue(final String TEXT) {
-        final String TRIMMED_TEXT = TEXT.trim();
+    private static File locate() {
+        File file = new File(".env");
+        if (file.exists()) return file;
 
-        for (final char STRING_DECLARATOR: STRING_DECLARATION_CHARS) {
-            String value = getTextBetweenCharPair(TRIMMED_TEXT, STRING_DECLARATOR);
-            if (value != null) return value;
+        for (int i = 1; !file.exists() && i < 3; i++)
+            file = new File("../".repeat(i) + ".env");
+
+        if (file.exists()) return file;
+
+        file = new File(".env");
+
+        try {
+            file.createNewFile();
         }
+        catch (Exception ignored) {}
 
-        return TRIMMED_TEXT;
+        return file;
     }
 
-    private final File FILE;
-    private final String KV_SEPARATOR = "=";
-    private final String COMMENT_DECLARATOR = "#";
-    private final char[] STRING_DECLARATION_CHARS = new char[]{'"', '\''};
+    /**
+     * The Environment File, or null until it has been located.
+     */
+    private volatile File file;
+    private volatile boolean compiledCacheEnabled;
+
+    /**
+     * The attributes of the File when it was last loaded or saved, or null if it hasn't been loaded yet.
+     */
+    private volatile Stamp stamp;
+
+    private static final char KV_SEPARATOR = '=';
+    private static final char COMMENT_DECLARATOR = '#';
+
+    /**
+     * The size in bytes above which Environment Files are memory-mapped rather than read through a buffer.
+     */
+    private static final long MAPPING_THRESHOLD = 1024 * 1024;
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The size, modification time and checksum of the File at the point it was loaded or saved.
+     */
+    private static final class Stamp {
+        /**
+         * Constructs a Stamp.
+         * @param SIZE the size of the File in bytes.
+         * @param MODIFIED_TIME the modification time of the File in milliseconds.
+         * @param CHECKSUM the CRC32C of the File's contents, or {@link #UNKNOWN_CHECKSUM}.
+         */
+        private Stamp(final long SIZE, final long MODIFIED_TIME, final long CHECKSUM) {
+            this.SIZE = SIZE;
+            this.MODIFIED_TIME = MODIFIED_TIME;
+            this.CHECKSUM = CHECKSUM;
+        }
+
+        private final long SIZE;
+        private final long MODIFIED_TIME;
+        private final long CHECKSUM;
+
+        /**
+         * A CRC32C is never negative, so this marks a Stamp whose contents weren't hashed.
+         */
+        private static final long UNKNOWN_CHECKSUM = -1;
+
+        /**
+         * The Stamp of a File that didn't exist when it was loaded.
+         */
+        private static final Stamp MISSING = new Stamp(-1, -1, UNKNOWN_CHECKSUM);
+    }
 }
@@ -0,0 +1,536 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.nio.CharBuffer;
+
+/**
+ * Parses the text of an Environment File in a single forward pass, passing each setting to an {@link EnvironmentVisitor}.
+ * Keys, values and comments are passed as views over the text, so only the Strings that the visitor keeps are allocated.
+ * <p>
+ * A Configuration loads its files with the plain syntax, where every setting is a single line and backslashes are kept as they are.
+ * The {@link EnvironmentReader} uses the extended syntax, where a quoted value may span several lines,
+ * as long as its first line holds no other quote. It then ends at the next quote, which must end its line,
+ * so any quotes within it must be escaped. Double-quoted values support the escape sequences
+ * {@code \n}, {@code \r}, {@code \t}, {@code \"} and {@code \\}, any other backslash is kept as it is.
+ */
+/* package-private */ final class EnvironmentParser {
+    /**
+     * Creates a parser that passes each setting to the given visitor.
+     * @param VISITOR the visitor to pass each setting to.
+     * @param EXTENDED whether quoted values may span several lines and double-quoted values may hold escape sequences.
+     */
+    public EnvironmentParser(final EnvironmentVisitor VISITOR, final boolean EXTENDED) {
+        this.VISITOR = VISITOR;
+        this.EXTENDED = EXTENDED;
+    }
+
+    /**
+     * Creates a visitor that passes each key and value to a consumer as Strings.
+     * @param CONSUMER the consumer to pass each upper-cased key and its value to.
+     * @return the visitor.
+     */
+    public static EnvironmentVisitor toVisitor(final SettingConsumer CONSUMER) {
+        return new EnvironmentVisitor() {
+            @Override
+            public boolean visit(CharSequence key, CharSequence value, CharSequence comment, int lineNumber) {
+                return visit(key, value, comment, lineNumber, (char) 0);
+            }
+
+            @Override
+            public boolean visit(CharSequence key, CharSequence value, CharSequence comment, int lineNumber, char quote) {
+                CONSUMER.accept(key.toString(), value.toString(), quote == '\'');
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Parses every complete setting in the given text, allowing a file to be parsed in chunks.
+     * A setting left unparsed is only scanned again from where the last call stopped, so a setting that spans
+     * many chunks costs the same as one that fits in a single chunk.
+     * @param CHARS an array-backed buffer in read mode, holding the text from its position to its limit.
+     * @param END_OF_INPUT whether this is the last chunk, if it isn't then a trailing setting that may continue is left unparsed.
+     * @return the number of characters consumed, any remaining characters should be passed again with the next chunk.
+     */
+    public int parse(final CharBuffer CHARS, final boolean END_OF_INPUT) {
+        final char[] ARRAY = CHARS.array();
+        final int OFFSET = CHARS.arrayOffset() + CHARS.position();
+
+        int end = CHARS.remaining();
+        final int SEARCHED_END;
+
+        if (!END_OF_INPUT) {
+            //A carriage return at the end of a chunk may be the first half of a CRLF, so its line waits for the next chunk.
+            if (end > 0 && CHARS.charAt(end - 1) == '\r') end--;
+            SEARCHED_END = end;
+
+            //Only the text added since the last call can hold a line break that hasn't been parsed yet.
+            while (end > searched && !isLineBreak(CHARS.charAt(end - 1))) end--;
+
+            if (end == searched) {
+                searched = SEARCHED_END;
+                return 0;
+            }
+        }
+        else SEARCHED_END = end;
+
+        int position = 0;
+
+        while (position < end && !stopped) {
+            LINE.resume = position == 0 ? resume : 0;
+
+            final boolean IS_SETTING = scanLine(CHARS, position, end, END_OF_INPUT, EXTENDED, LINE);
+            if (LINE.next < 0) {
+                //The next call starts at this setting, so remember how far it has been searched relative to it.
+                resume = LINE.resume - position;
+                searched = SEARCHED_END - position;
+
+                return position;
+            }
+
+            if (IS_SETTING) {
+                final CharSequence VALUE = LINE.escaped ? unescape(ARRAY, OFFSET + LINE.valueStart, OFFSET + LINE.valueEnd)
+                        : VALUE_VIEW.set(ARRAY, OFFSET + LINE.valueStart, OFFSET + LINE.valueEnd);
+
+                stopped = !VISITOR.visit(getKey(ARRAY, OFFSET + LINE.keyStart, OFFSET + LINE.keyEnd), VALUE,
+                        getComment(ARRAY, OFFSET), line, LINE.quote);
+            }
+            else if (LINE.commentStart >= 0)
+                stopped = !VISITOR.visitComment(getComment(ARRAY, OFFSET), line);
+
+            line += LINE.lineBreaks + (LINE.next > LINE.end ? 1 : 0);
+            position = LINE.next;
+        }
+
+        resume = 0;
+        searched = Math.max(SEARCHED_END - position, 0);
+
+        return position;
+    }
+
+    /**
+     * Returns whether the visitor asked to stop reading.
+     * @return true if the visitor returned false for the last setting or comment it was given.
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Scans the setting starting at the given position, recording where its key, value and comment are.
+     * @param TEXT the text being scanned.
+     * @param START the position of the first character of the line.
+     * @param END the end of the text.
+     * @param END_OF_INPUT whether the text ends at END, rather than continuing in the next chunk.
+     * @param EXTENDED whether to scan with the extended syntax, allowing multi-line values and escape sequences.
+     * @param LINE the Line to record the positions in, its next position is -1 if the setting may continue past END.
+     *             Its resume position is where to continue searching for the end of a multi-line value,
+     *             and is set to where the search stopped when the value continues past END.
+     * @return true if the line holds a key-value pair, false if it is blank or only a comment.
+     */
+    public static boolean scanLine(final CharSequence TEXT, final int START, final int END, final boolean END_OF_INPUT,
+                                   final boolean EXTENDED, final Line LINE) {
+        LINE.start = START;
+        LINE.commentStart = -1;
+        LINE.quote = 0;
+        LINE.escaped = false;
+        LINE.lineBreaks = 0;
+
+        //Find the separator, giving up on the line if a comment or the end of the line comes first.
+        int separator = START;
+        for (; separator < END; separator++) {
+            final char CHAR = TEXT.charAt(separator);
+            if (CHAR == KV_SEPARATOR) break;
+
+            if (CHAR == COMMENT_DECLARATOR || isLineBreak(CHAR)) {
+                if (CHAR == COMMENT_DECLARATOR) LINE.commentStart = separator;
+                endLine(TEXT, separator, END, LINE);
+
+                return false;
+            }
+        }
+
+        if (separator == END) {
+            endLine(TEXT, END, END, LINE);
+            return false;
+        }
+
+        LINE.keyStart = skipBlanks(TEXT, START, separator);
+        LINE.keyEnd = trimEnd(TEXT, LINE.keyStart, separator);
+
+        final int VALUE_START = skipBlanks(TEXT, separator + 1, END);
+
+        //Scan the rest of the line once, remembering where the comment and a closing quote could be.
+        final char QUOTE = VALUE_START < END ? TEXT.charAt(VALUE_START) : 0;
+        final boolean QUOTED = QUOTE == '"' || QUOTE == '\'';
+
+        int closingQuote = -1;
+        int quotedHash = -1;
+        int quotes = 0;
+        boolean escaped = false;
+        int lineEnd = QUOTED ? VALUE_START + 1 : VALUE_START;
+
+        for (; lineEnd < END; lineEnd++) {
+            final char CHAR = TEXT.charAt(lineEnd);
+            if (isLineBreak(CHAR)) break;
+
+            if (CHAR == COMMENT_DECLARATOR) {
+                if (!QUOTED || closingQuote >= 0) {
+                    LINE.commentStart = lineEnd;
+                    break;
+                }
+
+                if (quotedHash < 0) quotedHash = lineEnd;
+            }
+            else if (EXTENDED && QUOTE == '"' && CHAR == '\\' && closingQuote < 0 && lineEnd + 1 < END && !isLineBreak(TEXT.charAt(lineEnd + 1))) {
+                escaped = true;
+                lineEnd++;
+            }
+            else if (QUOTED && CHAR == QUOTE) {
+                closingQuote = lineEnd;
+                quotes++;
+            }
+            else if (!isBlank(CHAR) && closingQuote >= 0)
+                closingQuote = -1;
+        }
+
+        //A quote left open with no other quote on its line continues on the following lines.
+        if (EXTENDED && QUOTED && quotes == 0 && lineEnd < END) {
+            final int CLOSING_QUOTE = findClosingQuote(TEXT, Math.max(lineEnd, LINE.resume), END, QUOTE, LINE);
+
+            if (CLOSING_QUOTE == NOT_FOUND && !END_OF_INPUT) {
+                LINE.next = -1;
+                return true;
+            }
+
+            if (CLOSING_QUOTE >= 0) {
+                LINE.valueStart = VALUE_START + 1;
+                LINE.valueEnd = CLOSING_QUOTE;
+                LINE.quote = QUOTE;
+                LINE.escaped = QUOTE == '"' && indexOf(TEXT, '\\', VALUE_START + 1, CLOSING_QUOTE) >= 0;
+                LINE.lineBreaks = countLineBreaks(TEXT, lineEnd, CLOSING_QUOTE);
+
+                final int AFTER = skipBlanks(TEXT, CLOSING_QUOTE + 1, END);
+                if (AFTER < END && TEXT.charAt(AFTER) == COMMENT_DECLARATOR) LINE.commentStart = AFTER;
+
+                endLine(TEXT, AFTER, END, LINE);
+                return true;
+            }
+        }
+
+        if (closingQuote >= 0) {
+            LINE.valueStart = VALUE_START + 1;
+            LINE.valueEnd = closingQuote;
+            LINE.quote = QUOTE;
+            LINE.escaped = escaped;
+        }
+        else {
+            //An unterminated quote is part of the value, so a comment can only start at the first hash.
+            if (quotedHash >= 0) LINE.commentStart = quotedHash;
+
+            LINE.valueStart = VALUE_START;
+            LINE.valueEnd = trimEnd(TEXT, VALUE_START, LINE.commentStart >= 0 ? LINE.commentStart : lineEnd);
+        }
+
+        endLine(TEXT, LINE.commentStart >= 0 ? LINE.commentStart : lineEnd, END, LINE);
+        return true;
+    }
+
+    /**
+     * Gets the key of a setting upper-cased, only copying it if it isn't upper-case already.
+     * @param ARRAY the array holding the text.
+     * @param START the start of the key, inclusive.
+     * @param END the end of the key, exclusive.
+     * @return the upper-cased key.
+     */
+    private CharSequence getKey(final char[] ARRAY, final int START, final int END) {
+        for (int i = START; i < END; i++) {
+            final char CHAR = ARRAY[i];
+            if (CHAR >= 'a' && CHAR <= 'z' || CHAR > 127) return new String(ARRAY, START, END - START).toUpperCase();
+        }
+
+        return KEY_VIEW.set(ARRAY, START, END);
+    }
+
+    /**
+     * Gets the text of the comment on the scanned line.
+     * @param ARRAY the array holding the text.
+     * @param OFFSET the position in the array of the start of the text.
+     * @return the comment without its declarator and surrounding whitespace, or null if the line has no comment.
+     */
+    private CharSequence getComment(final char[] ARRAY, final int OFFSET) {
+        if (LINE.commentStart < 0) return null;
+
+        int start = OFFSET + LINE.commentStart + 1;
+        int end = OFFSET + LINE.end;
+        while (start < end && isBlank(ARRAY[start])) start++;
+        while (end > start && isBlank(ARRAY[end - 1])) end--;
+
+        return COMMENT_VIEW.set(ARRAY, start, end);
+    }
+
+    /**
+     * Copies a double-quoted value into the shared builder, replacing its escape sequences.
+     * @param ARRAY the array holding the text.
+     * @param START the start of the value, inclusive.
+     * @param END the end of the value, exclusive.
+     * @return the unescaped value.
+     */
+    private CharSequence unescape(final char[] ARRAY, final int START, final int END) {
+        UNESCAPED.setLength(0);
+
+        for (int i = START; i < END; i++) {
+            final char CHAR = ARRAY[i];
+
+            if (CHAR != '\\' || i + 1 == END) {
+                UNESCAPED.append(CHAR);
+                continue;
+            }
+
+            final char ESCAPED = ARRAY[++i];
+            switch (ESCAPED) {
+                case 'n': UNESCAPED.append('\n'); break;
+                case 'r': UNESCAPED.append('\r'); break;
+                case 't': UNESCAPED.append('\t'); break;
+                case '"': case '\\': UNESCAPED.append(ESCAPED); break;
+                default: UNESCAPED.append('\\').append(ESCAPED);
+            }
+        }
+
+        return UNESCAPED;
+    }
+
+    /**
+     * Searches the lines after a value's first line for its closing quote,
+     * which is the next quote as long as nothing but whitespace or a comment follows it on its line.
+     * @param TEXT the text being scanned.
+     * @param FROM the line break ending the value's first line.
+     * @param END the end of the text.
+     * @param QUOTE the quote the value was opened with.
+     * @param LINE the Line to record where the search stopped in, if the text ends first.
+     * @return the position of the closing quote, {@link #NOT_FOUND} if the text ends first,
+     *         or {@link #NOT_CLOSING} if the next quote is followed by more of its line, so the value is unterminated.
+     */
+    private static int findClosingQuote(final CharSequence TEXT, final int FROM, final int END, final char QUOTE, final Line LINE) {
+        for (int i = FROM; i < END; i++) {
+            final char CHAR = TEXT.charAt(i);
+
+            if (QUOTE == '"' && CHAR == '\\') {
+                //The character a backslash escapes may not have been read yet, so the search resumes at the backslash.
+                if (i + 1 == END) {
+                    LINE.resume = i;
+                    return NOT_FOUND;
+                }
+
+                i++;
+                continue;
+            }
+
+            if (CHAR != QUOTE) continue;
+
+            final int AFTER = skipBlanks(TEXT, i + 1, END);
+            return AFTER == END || isLineBreak(TEXT.charAt(AFTER)) || TEXT.charAt(AFTER) == COMMENT_DECLARATOR ? i : NOT_CLOSING;
+        }
+
+        LINE.resume = END;
+        return NOT_FOUND;
+    }
+
+    /**
+     * Records where the line ends and where the next line starts.
+     * @param TEXT the text being scanned.
+     * @param FROM a position on the line to search for its end from.
+     * @param END the end of the text.
+     * @param LINE the Line to record the positions in.
+     */
+    private static void endLine(final CharSequence TEXT, final int FROM, final int END, final Line LINE) {
+        int lineEnd = FROM;
+        while (lineEnd < END && !isLineBreak(TEXT.charAt(lineEnd))) lineEnd++;
+
+        LINE.end = lineEnd;
+        LINE.next = skipLineBreak(TEXT, lineEnd, END);
+    }
+
+    /**
+     * Skips over the line break at the given position, treating CRLF as a single line break.
+     * @param TEXT the text being scanned.
+     * @param LINE_END the position of the line break, or the end of the text.
+     * @param END the end of the text.
+     * @return the position of the first character of the next line.
+     */
+    private static int skipLineBreak(final CharSequence TEXT, final int LINE_END, final int END) {
+        if (LINE_END >= END) return END;
+
+        if (TEXT.charAt(LINE_END) == '\r' && LINE_END + 1 < END && TEXT.charAt(LINE_END + 1) == '\n')
+            return LINE_END + 2;
+
+        return LINE_END + 1;
+    }
+
+    /**
+     * Counts the line breaks in a region, treating CRLF as a single line break.
+     * @param TEXT the text being scanned.
+     * @param START the start of the region, inclusive.
+     * @param END the end of the region, exclusive.
+     * @return the number of line breaks.
+     */
+    private static int countLineBreaks(final CharSequence TEXT, final int START, final int END) {
+        int count = 0;
+        for (int i = START; i < END; i++) {
+            final char CHAR = TEXT.charAt(i);
+            if (CHAR == '\n' || CHAR == '\r' && (i + 1 == END || TEXT.charAt(i + 1) != '\n')) count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Finds a character within a region.
+     * @param TEXT the text being scanned.
+     * @param CHAR the character to find.
+     * @param START the start of the region, inclusive.
+     * @param END the end of the region, exclusive.
+     * @return the position of the first occurrence of the character, or -1 if the region doesn't contain it.
+     */
+    private static int indexOf(final CharSequence TEXT, final char CHAR, final int START, final int END) {
+        for (int i = START; i < END; i++)
+            if (TEXT.charAt(i) == CHAR) return i;
+
+        return -1;
+    }
+
+    /**
+     * Skips past any whitespace at the start of a region.
+     * @param TEXT the text being scanned.
+     * @param START the start of the region, inclusive.
+     * @param END the end of the region, exclusive.
+     * @return the position of the first non-whitespace character, or the end of the region.
+     */
+    private static int skipBlanks(final CharSequence TEXT, final int START, final int END) {
+        int start = START;
+        while (start < END && isBlank(TEXT.charAt(start))) start++;
+
+        return start;
+    }
+
+    /**
+     * Finds the end of a region with any trailing whitespace removed.
+     * @param TEXT the text being scanned.
+     * @param START the start of the region, inclusive.
+     * @param END the end of the region, exclusive.
+     * @return the position after the last non-whitespace character, or the start of the region.
+     */
+    private static int trimEnd(final CharSequence TEXT, final int START, final int END) {
+        int end = END;
+        while (end > START && isBlank(TEXT.charAt(end - 1))) end--;
+
+        return end;
+    }
+
+    /**
+     * Returns whether the given character ends a line.
+     * @param CHAR the character to check.
+     * @return true if the character is a carriage return or line feed.
+     */
+    private static boolean isLineBreak(final char CHAR) {
+        return CHAR == '\n' || CHAR == '\r';
+    }
+
+    /**
+     * Returns whether the given character would be removed by {@link String#trim()} without ending the line.
+     * @param CHAR the character to check.
+     * @return true if the character is whitespace or a control character other than a line break.
+     */
+    private static boolean isBlank(final char CHAR) {
+        return CHAR <= ' ' && !isLineBreak(CHAR);
+    }
+
+    private static final char KV_SEPARATOR = '=';
+    private static final char COMMENT_DECLARATOR = '#';
+    private static final int NOT_FOUND = -1;
+    private static final int NOT_CLOSING = -2;
+
+    private final EnvironmentVisitor VISITOR;
+    private final boolean EXTENDED;
+    private final Line LINE = new Line();
+    private final CharView KEY_VIEW = new CharView();
+    private final CharView VALUE_VIEW = new CharView();
+    private final CharView COMMENT_VIEW = new CharView();
+    private final StringBuilder UNESCAPED = new StringBuilder();
+
+    /**
+     * The line the next setting starts on, counting from 1, and whether the visitor has asked to stop.
+     */
+    private int line = 1;
+    private boolean stopped;
+
+    /**
+     * For the setting left unparsed by the last call, which starts the next chunk, how much of the chunk
+     * has already been searched for line breaks, and where the search for the end of a multi-line value resumes.
+     */
+    private int searched;
+    private int resume;
+
+    /**
+     * Receives each key-value pair as Strings.
+     */
+    @FunctionalInterface
+    /* package-private */ interface SettingConsumer {
+        /**
+         * Receives a key-value pair.
+         * @param key the upper-cased key.
+         * @param value the value, with any quotes removed.
+         * @param literal whether the value was single-quoted, so its references shouldn't be expanded.
+         */
+        void accept(String key, String value, boolean literal);
+    }
+
+    /**
+     * The positions of the parts of a single setting, filled in by {@link #scanLine}.
+     * Regions are half-open, and the key and value regions are only set when the line holds a key-value pair.
+     * The end is the end of the setting's last line, which is after its first line if a quoted value spans several.
+     */
+    /* package-private */ static final class Line {
+        int start;
+        int keyStart;
+        int keyEnd;
+        int valueStart;
+        int valueEnd;
+
+        /**
+         * The quote around the value, or 0 if it isn't quoted, and whether it holds escape sequences to replace.
+         */
+        char quote;
+        boolean escaped;
+
+        int commentStart;
+        int end;
+        int next;
+
+        /**
+         * Where to continue searching for the closing quote of a multi-line value that was left unparsed.
+         */
+        int resume;
+
+        /**
+         * The number of line breaks within the value.
+         */
+        int lineBreaks;
+    }
+}
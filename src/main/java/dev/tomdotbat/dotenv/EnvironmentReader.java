@@ -0,0 +1,153 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams the settings of an Environment File to an {@link EnvironmentVisitor}, without building a map of them.
+ * <p>
+ * Text is decoded and parsed in fixed-size chunks, and each key, value and comment is passed to the visitor
+ * as a view over the chunk rather than a copy, so large files and dumps can be scanned with little allocation.
+ * Keys are upper-cased as a {@link Configuration} stores them, and the reader extends the syntax a Configuration loads
+ * so that quoted values may span several lines. Double-quoted values also support the escape sequences
+ * {@code \n}, {@code \r}, {@code \t}, {@code \"} and {@code \\}, any other backslash is kept as it is.
+ */
+public final class EnvironmentReader {
+    private EnvironmentReader() {}
+
+    /**
+     * Reads the UTF-8 text of a stream, passing each setting to the visitor. The stream is not closed.
+     * @param STREAM the stream to read from.
+     * @param VISITOR the visitor to pass each setting to.
+     * @return true if the whole stream was read, or false if the visitor stopped early.
+     * @throws IOException if an error occurs when reading or decoding the stream.
+     */
+    public static boolean read(final InputStream STREAM, final EnvironmentVisitor VISITOR) throws IOException {
+        return read(Channels.newChannel(STREAM), VISITOR);
+    }
+
+    /**
+     * Reads the UTF-8 text of a channel, passing each setting to the visitor. The channel is not closed.
+     * @param CHANNEL the channel to read from.
+     * @param VISITOR the visitor to pass each setting to.
+     * @return true if the whole channel was read, or false if the visitor stopped early.
+     * @throws IOException if an error occurs when reading or decoding the channel.
+     */
+    public static boolean read(final ReadableByteChannel CHANNEL, final EnvironmentVisitor VISITOR) throws IOException {
+        final EnvironmentParser PARSER = new EnvironmentParser(VISITOR, true);
+        final ByteBuffer BYTES = ByteBuffer.allocate(BUFFER_SIZE).flip();
+        final CharsetDecoder DECODER = StandardCharsets.UTF_8.newDecoder();
+
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        CoderResult result = CoderResult.UNDERFLOW;
+        boolean endOfInput = false;
+
+        while (true) {
+            //Only read more bytes once the decoder has used up the ones it already has.
+            if (result.isUnderflow() && !endOfInput) {
+                BYTES.compact();
+                endOfInput = CHANNEL.read(BYTES) < 0;
+                BYTES.flip();
+            }
+
+            result = DECODER.decode(BYTES, chars, endOfInput);
+            if (result.isError()) result.throwException();
+
+            final boolean FINISHED = endOfInput && result.isUnderflow();
+            if (FINISHED) DECODER.flush(chars);
+
+            if (!parse(PARSER, chars, FINISHED)) return false;
+            if (FINISHED) return true;
+
+            chars = prepare(chars);
+        }
+    }
+
+    /**
+     * Reads the text of a reader, passing each setting to the visitor. The reader is not closed.
+     * @param SOURCE the reader to read from.
+     * @param VISITOR the visitor to pass each setting to.
+     * @return true if the whole reader was read, or false if the visitor stopped early.
+     * @throws IOException if an error occurs when reading.
+     */
+    public static boolean read(final Reader SOURCE, final EnvironmentVisitor VISITOR) throws IOException {
+        final EnvironmentParser PARSER = new EnvironmentParser(VISITOR, true);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+        while (true) {
+            final boolean FINISHED = SOURCE.read(chars) < 0;
+
+            if (!parse(PARSER, chars, FINISHED)) return false;
+            if (FINISHED) return true;
+
+            chars = prepare(chars);
+        }
+    }
+
+    /**
+     * Reads the settings in a piece of text, passing each one to the visitor.
+     * @param TEXT the text to read.
+     * @param VISITOR the visitor to pass each setting to.
+     * @return true if the whole text was read, or false if the visitor stopped early.
+     */
+    public static boolean read(final CharSequence TEXT, final EnvironmentVisitor VISITOR) {
+        return parse(new EnvironmentParser(VISITOR, true), CharBuffer.allocate(TEXT.length()).append(TEXT), true);
+    }
+
+    /**
+     * Parses every complete setting in the buffer, leaving its position after the last one.
+     * @param PARSER the parser to pass the text to.
+     * @param CHARS the buffer, in write mode with the decoded text before its position.
+     * @param END_OF_INPUT whether the buffer holds the end of the text, if it doesn't then an incomplete setting is left unparsed.
+     * @return true if the visitor wants to keep reading.
+     */
+    private static boolean parse(final EnvironmentParser PARSER, final CharBuffer CHARS, final boolean END_OF_INPUT) {
+        CHARS.flip();
+        CHARS.position(PARSER.parse(CHARS, END_OF_INPUT));
+
+        return !PARSER.isStopped();
+    }
+
+    /**
+     * Moves any unparsed text to the start of the buffer, ready for more to be read after it.
+     * @param CHARS the buffer, positioned after the last parsed setting.
+     * @return the buffer to read into, which is a larger copy if a single setting filled the whole buffer.
+     */
+    private static CharBuffer prepare(final CharBuffer CHARS) {
+        if (CHARS.position() > 0) return CHARS.compact();
+
+        //A single setting didn't fit in the buffer, so grow it rather than dropping the setting.
+        if (CHARS.limit() == CHARS.capacity())
+            return CharBuffer.allocate(CHARS.capacity() * 2).put(CHARS);
+
+        //Nothing was parsed, so the text is already at the start and only needs the rest of the buffer after it.
+        return CHARS.position(CHARS.limit()).limit(CHARS.capacity());
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+}
@@ -0,0 +1,60 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+/**
+ * Receives each setting as an {@link EnvironmentReader} parses it from a stream.
+ * The CharSequences passed to the visitor are views over the reader's buffer, so they're only valid until the method returns,
+ * and should be copied with {@link CharSequence#toString()} if they need to be kept.
+ */
+@FunctionalInterface
+public interface EnvironmentVisitor {
+    /**
+     * Called for each key-value pair, in the order they appear in the stream.
+     * @param key the key, upper-cased as the Configuration stores it.
+     * @param value the value, with any quotes removed and escape sequences replaced.
+     * @param comment the text of the comment following the value, or null if there isn't one.
+     * @param lineNumber the line the setting starts on, counting from 1.
+     * @return true to keep reading, or false to stop.
+     */
+    boolean visit(CharSequence key, CharSequence value, CharSequence comment, int lineNumber);
+
+    /**
+     * Called for each key-value pair along with the quote its value was written in.
+     * Calls {@link #visit(CharSequence, CharSequence, CharSequence, int)} by default.
+     * @param key the key, upper-cased as the Configuration stores it.
+     * @param value the value, with any quotes removed and escape sequences replaced.
+     * @param comment the text of the comment following the value, or null if there isn't one.
+     * @param lineNumber the line the setting starts on, counting from 1.
+     * @param quote the quote around the value, either {@code '"'} or {@code '\''}, or 0 if it wasn't quoted.
+     * @return true to keep reading, or false to stop.
+     */
+    default boolean visit(CharSequence key, CharSequence value, CharSequence comment, int lineNumber, char quote) {
+        return visit(key, value, comment, lineNumber);
+    }
+
+    /**
+     * Called for each line that only holds a comment. Does nothing by default.
+     * @param comment the text of the comment.
+     * @param lineNumber the line of the comment, counting from 1.
+     * @return true to keep reading, or false to stop.
+     */
+    default boolean visitComment(CharSequence comment, int lineNumber) {
+        return true;
+    }
+}
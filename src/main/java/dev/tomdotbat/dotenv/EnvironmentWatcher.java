@@ -0,0 +1,172 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches the Environment Files of a Configuration, reloading the layer that changed on a background thread.
+ * Bursts of events, such as an editor writing a file in several steps, are coalesced into a single reload.
+ * A File that can't be read is left for the next change to reload, while any other failure of a reload,
+ * such as a listener throwing or the settings not matching the schema, is passed to the watcher's error handler.
+ */
+public final class EnvironmentWatcher implements AutoCloseable {
+    /**
+     * Starts watching the Environment Files of a Configuration.
+     * @param configuration the Configuration to reload.
+     * @param paths the paths of the Environment Files.
+     * @param debounce how long the Files must go without changing before they are reloaded.
+     * @param errorHandler the handler of Exceptions thrown by a reload, other than a File failing to be read.
+     * @throws IOException if a File's directory can't be watched.
+     */
+    /* package-private */ EnvironmentWatcher(Configuration configuration, List<Path> paths, Duration debounce,
+                                            Consumer<RuntimeException> errorHandler) throws IOException {
+        CONFIGURATION = configuration;
+        ERROR_HANDLER = errorHandler;
+        DEBOUNCE_MILLIS = Math.max(debounce.toMillis(), 1);
+        SERVICE = FileSystems.getDefault().newWatchService();
+
+        for (final Path PATH: paths) {
+            final Path DIRECTORY = PATH.toAbsolutePath().getParent();
+            List<Path> directoryPaths = PATHS.get(DIRECTORY);
+
+            //Editors often replace a File rather than writing to it, so watch its directory for any kind of change.
+            if (directoryPaths == null) {
+                final WatchKey KEY = DIRECTORY.register(SERVICE,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+
+                directoryPaths = new ArrayList<>();
+                PATHS.put(DIRECTORY, directoryPaths);
+                DIRECTORIES.put(KEY, DIRECTORY);
+            }
+
+            directoryPaths.add(PATH);
+        }
+
+        final Thread THREAD = new Thread(this::watch, "dotenv-watcher-" + paths.get(paths.size() - 1).getFileName());
+        THREAD.setDaemon(true);
+        THREAD.start();
+    }
+
+    /**
+     * Stops watching the Environment Files.
+     * @throws IOException if an error occurs when closing the underlying WatchService.
+     */
+    @Override
+    public void close() throws IOException {
+        SERVICE.close();
+    }
+
+    /**
+     * Waits for changes to the Environment Files, reloading once they settle, until the watcher is closed.
+     */
+    private void watch() {
+        final Set<Path> CHANGED_PATHS = new LinkedHashSet<>();
+
+        try {
+            while (true) {
+                collectChangedPaths(SERVICE.take(), CHANGED_PATHS);
+
+                //Keep waiting until the directories have been quiet for the debounce period.
+                while (!CHANGED_PATHS.isEmpty()) {
+                    final WatchKey KEY = SERVICE.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                    if (KEY == null) break;
+
+                    collectChangedPaths(KEY, CHANGED_PATHS);
+                }
+
+                for (final Path PATH: CHANGED_PATHS) reload(PATH);
+                CHANGED_PATHS.clear();
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException ignored) {}
+    }
+
+    /**
+     * Drains the events of a WatchKey, collecting the watched Files they affect.
+     * @param key the signalled WatchKey.
+     * @param changedPaths the set to add the path of each changed File to.
+     *                     Every File in the directory is added if events were lost, as any of them may have changed.
+     */
+    private void collectChangedPaths(WatchKey key, Set<Path> changedPaths) {
+        final List<Path> DIRECTORY_PATHS = PATHS.get(DIRECTORIES.get(key));
+
+        for (final WatchEvent<?> EVENT: key.pollEvents()) {
+            for (final Path PATH: DIRECTORY_PATHS)
+                if (EVENT.kind() == StandardWatchEventKinds.OVERFLOW || PATH.getFileName().equals(EVENT.context()))
+                    changedPaths.add(PATH);
+        }
+
+        key.reset();
+    }
+
+    /**
+     * Reloads the layer of a changed File, leaving the current settings in place if the File can't be read,
+     * as it may be part way through being replaced. The next change to the File will trigger another attempt.
+     * @param path the path of the changed File.
+     */
+    private void reload(Path path) {
+        try {
+            CONFIGURATION.reloadLayer(path);
+        }
+        catch (IOException ignored) {}
+        catch (RuntimeException ex) {
+            ERROR_HANDLER.accept(ex);
+        }
+    }
+
+    /**
+     * The default error handler, which passes the Exception to the current thread's uncaught exception handler
+     * without stopping the thread, so it is reported in the same way as an Exception that escaped it.
+     * Also used for failed write-behind saves.
+     * @param exception the Exception thrown by a reload or a background save.
+     */
+    /* package-private */ static void reportUncaught(Exception exception) {
+        final Thread THREAD = Thread.currentThread();
+        THREAD.getUncaughtExceptionHandler().uncaughtException(THREAD, exception);
+    }
+
+    private final Configuration CONFIGURATION;
+    private final Consumer<RuntimeException> ERROR_HANDLER;
+    private final long DEBOUNCE_MILLIS;
+    private final WatchService SERVICE;
+
+    /**
+     * The watched directories by their WatchKey, and the watched Files within each directory.
+     */
+    private final Map<WatchKey, Path> DIRECTORIES = new HashMap<>();
+    private final Map<Path, List<Path>> PATHS = new HashMap<>();
+}
@@ -0,0 +1,174 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable map of settings compiled into an open-addressed table over two parallel arrays,
+ * used once a Configuration has been frozen. Unlike a HashMap there is no node object per entry,
+ * so the table is smaller and a lookup only touches the key and value arrays.
+ * The table is kept at most half full, so a probe for a missing key ends quickly.
+ * <p>
+ * A table can also hash and compare keys ignoring case, without creating an upper-cased copy of the key being looked up,
+ * which is how a Configuration with case-insensitive keys finds its settings.
+ */
+/* package-private */ final class FrozenTable extends AbstractMap<String, Value> {
+    /**
+     * Compiles the given settings into a table.
+     * @param values the settings to compile.
+     * @param ignoreCase whether keys are looked up ignoring case.
+     */
+    public FrozenTable(Map<String, Value> values, boolean ignoreCase) {
+        IGNORE_CASE = ignoreCase;
+
+        int capacity = 2;
+        while (capacity < values.size() * 2) capacity <<= 1;
+
+        KEYS = new String[capacity];
+        VALUES = new Value[capacity];
+        MASK = capacity - 1;
+        SIZE = values.size();
+
+        for (final Map.Entry<String, Value> ENTRY: values.entrySet()) {
+            int index = indexOf(ENTRY.getKey());
+            while (KEYS[index] != null) index = (index + 1) & MASK;
+
+            KEYS[index] = ENTRY.getKey();
+            VALUES[index] = ENTRY.getValue();
+        }
+    }
+
+    @Override
+    public Value get(Object key) {
+        final int INDEX = find(key);
+        return INDEX >= 0 ? VALUES[INDEX] : null;
+    }
+
+    /**
+     * Gets the key as it is stored in the table, which may differ in case from the given key.
+     * @param key the key to look up.
+     * @return the stored key, or null if the table doesn't have it.
+     */
+    public String getKey(String key) {
+        final int INDEX = find(key);
+        return INDEX >= 0 ? KEYS[INDEX] : null;
+    }
+
+    /**
+     * Returns whether the table looks up keys ignoring case.
+     * @return true if keys are looked up ignoring case.
+     */
+    public boolean isIgnoreCase() {
+        return IGNORE_CASE;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return SIZE;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Value>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<String, Value>> iterator() {
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        while (index < KEYS.length && KEYS[index] == null) index++;
+                        return index < KEYS.length;
+                    }
+
+                    @Override
+                    public Map.Entry<String, Value> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+
+                        final Map.Entry<String, Value> ENTRY = new SimpleImmutableEntry<>(KEYS[index], VALUES[index]);
+                        index++;
+
+                        return ENTRY;
+                    }
+
+                    private int index;
+                };
+            }
+
+            @Override
+            public int size() {
+                return SIZE;
+            }
+        };
+    }
+
+    /**
+     * Finds the slot holding a key.
+     * @param key the key to find.
+     * @return the key's slot, or -1 if the table doesn't have it.
+     */
+    private int find(Object key) {
+        if (!(key instanceof String)) return -1;
+
+        final String STRING = (String) key;
+        for (int index = indexOf(STRING); ; index = (index + 1) & MASK) {
+            final String KEY = KEYS[index];
+            if (KEY == null) return -1;
+            if (IGNORE_CASE ? KEY.equalsIgnoreCase(STRING) : KEY.equals(STRING)) return index;
+        }
+    }
+
+    /**
+     * Gets the slot a key's probe starts at, spreading the high bits of its hash so they affect the slot too.
+     * @param key the key.
+     * @return the starting slot.
+     */
+    private int indexOf(String key) {
+        final int HASH = IGNORE_CASE ? hashIgnoreCase(key) : key.hashCode();
+        return (HASH ^ (HASH >>> 16)) & MASK;
+    }
+
+    /**
+     * Hashes a key so that any two keys {@link String#equalsIgnoreCase} considers equal have the same hash,
+     * folding the case of each character in the same way it does.
+     * @param key the key.
+     * @return the case-insensitive hash.
+     */
+    /* package-private */ static int hashIgnoreCase(String key) {
+        int hash = 0;
+        for (int i = 0; i < key.length(); i++)
+            hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(key.charAt(i)));
+
+        return hash;
+    }
+
+    private final boolean IGNORE_CASE;
+    private final String[] KEYS;
+    private final Value[] VALUES;
+    private final int MASK;
+    private final int SIZE;
+}
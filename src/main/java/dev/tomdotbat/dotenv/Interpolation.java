@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Finds and expands references to other keys, written as {@code ${KEY}}, within a value.
+ * A reference names a key as it is written, which is looked up ignoring case only while the Configuration's keys are case-insensitive,
+ * and an unterminated reference is left as it is.
+ * A reference is escaped by doubling its dollar sign, so {@code $${KEY}} is read as the literal text {@code ${KEY}}.
+ */
+/* package-private */ final class Interpolation {
+    private Interpolation() {}
+
+    /**
+     * Returns whether a value has anything to expand, either a reference or an escaped one.
+     * @param VALUE the value to check.
+     * @return true if the value must be expanded before it's read.
+     */
+    public static boolean needsExpanding(final String VALUE) {
+        return VALUE.contains(REFERENCE_START);
+    }
+
+    /**
+     * Finds the keys referenced by a value.
+     * @param VALUE the value to search.
+     * @return the referenced keys in the order they appear, or an empty array if there are none.
+     */
+    public static String[] findReferences(final String VALUE) {
+        if (!needsExpanding(VALUE)) return NO_REFERENCES;
+
+        final List<String> REFERENCES = new ArrayList<>();
+        int position = VALUE.indexOf(DOLLAR);
+
+        while (position >= 0) {
+            if (VALUE.startsWith(ESCAPED_START, position)) {
+                position = VALUE.indexOf(DOLLAR, position + ESCAPED_START.length());
+                continue;
+            }
+
+            if (!VALUE.startsWith(REFERENCE_START, position)) {
+                position = VALUE.indexOf(DOLLAR, position + 1);
+                continue;
+            }
+
+            final int END = VALUE.indexOf(REFERENCE_END, position + REFERENCE_START.length());
+            if (END < 0) break;
+
+            REFERENCES.add(getKey(VALUE, position, END));
+            position = VALUE.indexOf(DOLLAR, END + 1);
+        }
+
+        return REFERENCES.isEmpty() ? NO_REFERENCES : REFERENCES.toArray(new String[0]);
+    }
+
+    /**
+     * Expands every reference in a value, and replaces each escaped reference with the text it escapes.
+     * @param VALUE the value to expand.
+     * @param LOOKUP the function to get the expanded value of a referenced key, returning null if it doesn't exist.
+     * @return the value with each reference replaced, references to keys that don't exist are replaced with nothing.
+     */
+    public static String expand(final String VALUE, final Function<String, String> LOOKUP) {
+        final StringBuilder BUILDER = new StringBuilder(VALUE.length() + 16);
+        int copied = 0;
+        int position = VALUE.indexOf(DOLLAR);
+
+        while (position >= 0) {
+            if (VALUE.startsWith(ESCAPED_START, position)) {
+                //Drop the first dollar sign, leaving the rest to be copied as it is.
+                BUILDER.append(VALUE, copied, position);
+                copied = position + 1;
+                position = VALUE.indexOf(DOLLAR, position + ESCAPED_START.length());
+                continue;
+            }
+
+            if (!VALUE.startsWith(REFERENCE_START, position)) {
+                position = VALUE.indexOf(DOLLAR, position + 1);
+                continue;
+            }
+
+            final int END = VALUE.indexOf(REFERENCE_END, position + REFERENCE_START.length());
+            if (END < 0) break;
+
+            final String REFERENCED = LOOKUP.apply(getKey(VALUE, position, END));
+            BUILDER.append(VALUE, copied, position);
+            if (REFERENCED != null) BUILDER.append(REFERENCED);
+
+            copied = END + 1;
+            position = VALUE.indexOf(DOLLAR, copied);
+        }
+
+        return BUILDER.append(VALUE, copied, VALUE.length()).toString();
+    }
+
+    /**
+     * Gets the key named by a reference.
+     * @param VALUE the value holding the reference.
+     * @param START the position of the reference's opening characters.
+     * @param END the position of the reference's closing brace.
+     * @return the trimmed key.
+     */
+    private static String getKey(final String VALUE, final int START, final int END) {
+        return VALUE.substring(START + REFERENCE_START.length(), END).trim();
+    }
+
+    private static final char DOLLAR = '$';
+    private static final String REFERENCE_START = "${";
+    private static final String ESCAPED_START = "$${";
+    private static final char REFERENCE_END = '}';
+    private static final String[] NO_REFERENCES = new String[0];
+}
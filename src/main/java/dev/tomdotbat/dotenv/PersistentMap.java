@@ -0,0 +1,457 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable map of settings stored as a hash array mapped trie, which shares structure between versions.
+ * Adding or removing a key copies only the path of nodes leading to it, so each new version of the settings
+ * costs a handful of small arrays rather than a copy of every entry, and older versions are never changed.
+ * <p>
+ * Each node holds a bitmap of the 32 possible branches for five bits of a key's hash, and an array with a slot for each
+ * branch that is present, holding either a Leaf, a Node for the next five bits, or a Collision of keys with the same hash.
+ * <p>
+ * A map can also hash and compare keys ignoring case in the same way as a {@link FrozenTable}, so a Configuration
+ * with case-insensitive keys keeps its index persistent too. Keys that are equal ignoring case are then a single setting.
+ */
+/* package-private */ final class PersistentMap extends AbstractMap<String, Value> {
+    private PersistentMap(final Node ROOT, final int SIZE, final boolean IGNORE_CASE) {
+        this.ROOT = ROOT;
+        this.SIZE = SIZE;
+        this.IGNORE_CASE = IGNORE_CASE;
+    }
+
+    /**
+     * Gets a persistent map of the given settings, copying them only if they aren't already in one that looks up keys the same way.
+     * @param values the settings.
+     * @param ignoreCase whether keys are looked up ignoring case.
+     * @return the persistent map.
+     */
+    public static PersistentMap of(Map<String, Value> values, boolean ignoreCase) {
+        if (values instanceof PersistentMap && ((PersistentMap) values).IGNORE_CASE == ignoreCase) return (PersistentMap) values;
+
+        PersistentMap map = ignoreCase ? EMPTY_IGNORE_CASE : EMPTY;
+        for (final Map.Entry<String, Value> ENTRY: values.entrySet())
+            map = map.with(ENTRY.getKey(), ENTRY.getValue());
+
+        return map;
+    }
+
+    /**
+     * Gets a version of the map with the given key set to a Value.
+     * @param key the key to set.
+     * @param value the Value of the key.
+     * @return the new version, sharing every node that doesn't lead to the key with this one.
+     */
+    public PersistentMap with(String key, Value value) {
+        final int HASH = hash(key);
+        final boolean ADDED = find(HASH, key) == null;
+
+        return new PersistentMap(insert(ROOT, new Leaf(HASH, key, value), 0), ADDED ? SIZE + 1 : SIZE, IGNORE_CASE);
+    }
+
+    /**
+     * Gets a version of the map without the given key.
+     * @param key the key to remove.
+     * @return the new version, or this map if it doesn't have the key.
+     */
+    public PersistentMap without(String key) {
+        final int HASH = hash(key);
+        if (find(HASH, key) == null) return this;
+
+        final Object ROOT = remove(this.ROOT, HASH, key, 0);
+        if (ROOT == null) return IGNORE_CASE ? EMPTY_IGNORE_CASE : EMPTY;
+
+        if (ROOT instanceof Node) return new PersistentMap((Node) ROOT, SIZE - 1, IGNORE_CASE);
+
+        //A single Leaf or Collision left at the root still needs a Node to hold it.
+        final int REMAINING_HASH = ROOT instanceof Leaf ? ((Leaf) ROOT).HASH : ((Collision) ROOT).HASH;
+        return new PersistentMap(new Node(bitOf(REMAINING_HASH, 0), new Object[]{ROOT}), SIZE - 1, IGNORE_CASE);
+    }
+
+    @Override
+    public Value get(Object key) {
+        if (!(key instanceof String)) return null;
+
+        final Leaf LEAF = find(hash((String) key), (String) key);
+        return LEAF != null ? LEAF.getValue() : null;
+    }
+
+    /**
+     * Gets the key as it is stored in the map, which may differ in case from the given key.
+     * @param key the key to look up.
+     * @return the stored key, or null if the map doesn't have it.
+     */
+    public String getKey(String key) {
+        final Leaf LEAF = find(hash(key), key);
+        return LEAF != null ? LEAF.getKey() : null;
+    }
+
+    /**
+     * Returns whether the map looks up keys ignoring case.
+     * @return true if keys are looked up ignoring case.
+     */
+    public boolean isIgnoreCase() {
+        return IGNORE_CASE;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return SIZE;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Value>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<String, Value>> iterator() {
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        if (next != null) return true;
+
+                        //Walk the trie depth first, keeping the slots and position of each level on a stack.
+                        while (depth >= 0) {
+                            final Object[] SLOTS = STACK_SLOTS[depth];
+
+                            if (STACK_INDEX[depth] == SLOTS.length) {
+                                depth--;
+                                continue;
+                            }
+
+                            final Object SLOT = SLOTS[STACK_INDEX[depth]++];
+
+                            if (SLOT instanceof Leaf) {
+                                next = (Leaf) SLOT;
+                                return true;
+                            }
+
+                            depth++;
+                            STACK_SLOTS[depth] = SLOT instanceof Node ? ((Node) SLOT).SLOTS : ((Collision) SLOT).LEAVES;
+                            STACK_INDEX[depth] = 0;
+                        }
+
+                        return false;
+                    }
+
+                    @Override
+                    public Map.Entry<String, Value> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+
+                        final Leaf LEAF = next;
+                        next = null;
+
+                        return LEAF;
+                    }
+
+                    private final Object[][] STACK_SLOTS = new Object[MAX_DEPTH][];
+                    private final int[] STACK_INDEX = new int[MAX_DEPTH];
+                    private int depth;
+                    private Leaf next;
+
+                    {
+                        STACK_SLOTS[0] = ROOT.SLOTS;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return SIZE;
+            }
+        };
+    }
+
+    /**
+     * Finds the Leaf holding a key.
+     * @param HASH the hash of the key.
+     * @param KEY the key to find.
+     * @return the key's Leaf, or null if the map doesn't have it.
+     */
+    private Leaf find(final int HASH, final String KEY) {
+        Node node = ROOT;
+
+        for (int shift = 0; ; shift += BITS) {
+            final int BIT = bitOf(HASH, shift);
+            if ((node.BITMAP & BIT) == 0) return null;
+
+            final Object SLOT = node.SLOTS[node.indexOf(BIT)];
+
+            if (SLOT instanceof Leaf) {
+                final Leaf LEAF = (Leaf) SLOT;
+                return LEAF.HASH == HASH && matches(LEAF.getKey(), KEY) ? LEAF : null;
+            }
+
+            if (SLOT instanceof Collision) {
+                final Collision COLLISION = (Collision) SLOT;
+                return COLLISION.HASH == HASH ? COLLISION.find(KEY, IGNORE_CASE) : null;
+            }
+
+            node = (Node) SLOT;
+        }
+    }
+
+    /**
+     * Adds a Leaf below a node, replacing any Leaf with the same key.
+     * @param NODE the node to add the Leaf below.
+     * @param LEAF the Leaf to add.
+     * @param SHIFT the position of the node's five bits in the hash.
+     * @return a copy of the node with the Leaf added.
+     */
+    private Node insert(final Node NODE, final Leaf LEAF, final int SHIFT) {
+        final int BIT = bitOf(LEAF.HASH, SHIFT);
+        final int INDEX = NODE.indexOf(BIT);
+
+        if ((NODE.BITMAP & BIT) == 0) {
+            final Object[] SLOTS = new Object[NODE.SLOTS.length + 1];
+            System.arraycopy(NODE.SLOTS, 0, SLOTS, 0, INDEX);
+            SLOTS[INDEX] = LEAF;
+            System.arraycopy(NODE.SLOTS, INDEX, SLOTS, INDEX + 1, NODE.SLOTS.length - INDEX);
+
+            return new Node(NODE.BITMAP | BIT, SLOTS);
+        }
+
+        final Object SLOT = NODE.SLOTS[INDEX];
+        final Object REPLACEMENT;
+
+        if (SLOT instanceof Node)
+            REPLACEMENT = insert((Node) SLOT, LEAF, SHIFT + BITS);
+        else if (SLOT instanceof Leaf) {
+            final Leaf EXISTING = (Leaf) SLOT;
+
+            if (EXISTING.HASH == LEAF.HASH && matches(EXISTING.getKey(), LEAF.getKey())) REPLACEMENT = LEAF;
+            else if (EXISTING.HASH == LEAF.HASH) REPLACEMENT = new Collision(LEAF.HASH, new Leaf[]{EXISTING, LEAF});
+            else REPLACEMENT = insert(new Node(bitOf(EXISTING.HASH, SHIFT + BITS), new Object[]{EXISTING}), LEAF, SHIFT + BITS);
+        }
+        else {
+            final Collision EXISTING = (Collision) SLOT;
+
+            if (EXISTING.HASH == LEAF.HASH) REPLACEMENT = EXISTING.with(LEAF, IGNORE_CASE);
+            else REPLACEMENT = insert(new Node(bitOf(EXISTING.HASH, SHIFT + BITS), new Object[]{EXISTING}), LEAF, SHIFT + BITS);
+        }
+
+        final Object[] SLOTS = NODE.SLOTS.clone();
+        SLOTS[INDEX] = REPLACEMENT;
+
+        return new Node(NODE.BITMAP, SLOTS);
+    }
+
+    /**
+     * Removes a key from below a node, which must hold it.
+     * @param NODE the node to remove the key from below.
+     * @param HASH the hash of the key.
+     * @param KEY the key to remove.
+     * @param SHIFT the position of the node's five bits in the hash.
+     * @return a copy of the node without the key, the only Leaf or Collision left in it, or null if it is left empty.
+     */
+    private Object remove(final Node NODE, final int HASH, final String KEY, final int SHIFT) {
+        final int BIT = bitOf(HASH, SHIFT);
+        final int INDEX = NODE.indexOf(BIT);
+        final Object SLOT = NODE.SLOTS[INDEX];
+
+        final Object REPLACEMENT;
+        if (SLOT instanceof Leaf) REPLACEMENT = null;
+        else if (SLOT instanceof Collision) REPLACEMENT = ((Collision) SLOT).without(KEY, IGNORE_CASE);
+        else REPLACEMENT = remove((Node) SLOT, HASH, KEY, SHIFT + BITS);
+
+        if (REPLACEMENT != null) {
+            //A lone Leaf or Collision can move up into its parent, as only a Node's position depends on the shift.
+            if (NODE.SLOTS.length == 1 && !(REPLACEMENT instanceof Node)) return REPLACEMENT;
+
+            final Object[] SLOTS = NODE.SLOTS.clone();
+            SLOTS[INDEX] = REPLACEMENT;
+
+            return new Node(NODE.BITMAP, SLOTS);
+        }
+
+        if (NODE.SLOTS.length == 1) return null;
+        if (NODE.SLOTS.length == 2 && !(NODE.SLOTS[1 - INDEX] instanceof Node)) return NODE.SLOTS[1 - INDEX];
+
+        final Object[] SLOTS = new Object[NODE.SLOTS.length - 1];
+        System.arraycopy(NODE.SLOTS, 0, SLOTS, 0, INDEX);
+        System.arraycopy(NODE.SLOTS, INDEX + 1, SLOTS, INDEX, SLOTS.length - INDEX);
+
+        return new Node(NODE.BITMAP & ~BIT, SLOTS);
+    }
+
+    /**
+     * Spreads the higher bits of a key's hash into the lower bits, which choose the branches nearest the root.
+     * @param key the key to hash.
+     * @return the spread hash.
+     */
+    private int hash(String key) {
+        final int HASH = IGNORE_CASE ? FrozenTable.hashIgnoreCase(key) : key.hashCode();
+        return HASH ^ (HASH >>> 16);
+    }
+
+    /**
+     * Returns whether two keys are the same key in this map.
+     * @param stored the key stored in the map.
+     * @param key the key being looked up.
+     * @return true if the keys match.
+     */
+    private boolean matches(String stored, String key) {
+        return keysMatch(stored, key, IGNORE_CASE);
+    }
+
+    /**
+     * Returns whether two keys are the same key, optionally ignoring case.
+     * @param stored the key stored in the map.
+     * @param key the key being looked up.
+     * @param ignoreCase whether case is ignored.
+     * @return true if the keys match.
+     */
+    private static boolean keysMatch(String stored, String key, boolean ignoreCase) {
+        return ignoreCase ? stored.equalsIgnoreCase(key) : stored.equals(key);
+    }
+
+    /**
+     * Gets the bit of a node's bitmap for the branch a hash takes.
+     * @param HASH the hash.
+     * @param SHIFT the position of the node's five bits in the hash.
+     * @return the bit for the branch.
+     */
+    private static int bitOf(final int HASH, final int SHIFT) {
+        return 1 << ((HASH >>> SHIFT) & 31);
+    }
+
+    private static final int BITS = 5;
+
+    /**
+     * The deepest an iterator can go, which is a level for each five bits of a hash plus the Leaves of a Collision.
+     */
+    private static final int MAX_DEPTH = (Integer.SIZE + BITS - 1) / BITS + 1;
+    private static final PersistentMap EMPTY = new PersistentMap(new Node(0, new Object[0]), 0, false);
+    private static final PersistentMap EMPTY_IGNORE_CASE = new PersistentMap(new Node(0, new Object[0]), 0, true);
+
+    private final Node ROOT;
+    private final int SIZE;
+    private final boolean IGNORE_CASE;
+
+    /**
+     * A branch of the trie, with a slot for each of its branches that is present.
+     */
+    private static final class Node {
+        private Node(final int BITMAP, final Object[] SLOTS) {
+            this.BITMAP = BITMAP;
+            this.SLOTS = SLOTS;
+        }
+
+        /**
+         * Gets the slot of a branch, which is the number of branches present before it.
+         * @param BIT the bit of the branch.
+         * @return the index of the branch's slot.
+         */
+        private int indexOf(final int BIT) {
+            return Integer.bitCount(BITMAP & (BIT - 1));
+        }
+
+        private final int BITMAP;
+        private final Object[] SLOTS;
+    }
+
+    /**
+     * A single setting, which is also the entry returned when iterating.
+     */
+    private static final class Leaf extends SimpleImmutableEntry<String, Value> {
+        private Leaf(final int HASH, final String KEY, final Value VALUE) {
+            super(KEY, VALUE);
+            this.HASH = HASH;
+        }
+
+        private final int HASH;
+    }
+
+    /**
+     * The settings whose keys have exactly the same hash.
+     */
+    private static final class Collision {
+        private Collision(final int HASH, final Leaf[] LEAVES) {
+            this.HASH = HASH;
+            this.LEAVES = LEAVES;
+        }
+
+        /**
+         * Finds the Leaf holding a key.
+         * @param KEY the key to find.
+         * @param IGNORE_CASE whether keys are compared ignoring case.
+         * @return the key's Leaf, or null if the Collision doesn't have it.
+         */
+        private Leaf find(final String KEY, final boolean IGNORE_CASE) {
+            for (final Leaf LEAF: LEAVES)
+                if (keysMatch(LEAF.getKey(), KEY, IGNORE_CASE)) return LEAF;
+
+            return null;
+        }
+
+        /**
+         * Gets a copy of the Collision with a Leaf added, replacing any Leaf with the same key.
+         * @param LEAF the Leaf to add.
+         * @param IGNORE_CASE whether keys are compared ignoring case.
+         * @return the new Collision.
+         */
+        private Collision with(final Leaf LEAF, final boolean IGNORE_CASE) {
+            for (int i = 0; i < LEAVES.length; i++) {
+                if (!keysMatch(LEAVES[i].getKey(), LEAF.getKey(), IGNORE_CASE)) continue;
+
+                final Leaf[] COPY = LEAVES.clone();
+                COPY[i] = LEAF;
+
+                return new Collision(HASH, COPY);
+            }
+
+            final Leaf[] COPY = Arrays.copyOf(LEAVES, LEAVES.length + 1);
+            COPY[LEAVES.length] = LEAF;
+
+            return new Collision(HASH, COPY);
+        }
+
+        /**
+         * Gets a copy of the Collision without a key, which it must hold.
+         * @param KEY the key to remove.
+         * @param IGNORE_CASE whether keys are compared ignoring case.
+         * @return the new Collision, or the only Leaf left.
+         */
+        private Object without(final String KEY, final boolean IGNORE_CASE) {
+            if (LEAVES.length == 2) return keysMatch(LEAVES[0].getKey(), KEY, IGNORE_CASE) ? LEAVES[1] : LEAVES[0];
+
+            final Leaf[] COPY = new Leaf[LEAVES.length - 1];
+            int index = 0;
+
+            for (final Leaf LEAF: LEAVES)
+                if (!keysMatch(LEAF.getKey(), KEY, IGNORE_CASE)) COPY[index++] = LEAF;
+
+            return new Collision(HASH, COPY);
+        }
+
+        private final int HASH;
+        private final Leaf[] LEAVES;
+    }
+}
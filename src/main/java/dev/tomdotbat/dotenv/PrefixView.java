@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A read-only view of the settings whose keys start with a prefix, with the prefix removed.
+ * Nothing is copied when the view is created, every read goes to the snapshot given by its source,
+ * which is either the Configuration's current snapshot for a live view, or a single snapshot for a point-in-time view.
+ * Iterating only visits the matching keys, found by binary search over the sorted keys.
+ */
+/* package-private */ final class PrefixView extends AbstractMap<String, String> {
+    /**
+     * Creates a view of the settings starting with the prefix.
+     * @param snapshots the source of the snapshot to read from for each operation.
+     * @param prefix the prefix of the keys to include, which may be empty to include every key.
+     */
+    public PrefixView(Supplier<Snapshot> snapshots, String prefix) {
+        SNAPSHOTS = snapshots;
+        PREFIX = prefix;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (!(key instanceof String)) return null;
+
+        final Value VALUE = SNAPSHOTS.get().get(PREFIX.isEmpty() ? (String) key : PREFIX + key);
+        return VALUE != null ? VALUE.getString() : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        final Snapshot SNAPSHOT = SNAPSHOTS.get();
+        if (PREFIX.isEmpty()) return SNAPSHOT.getValues().size();
+
+        final int START = SNAPSHOT.findPrefixStart(PREFIX);
+        return SNAPSHOT.findPrefixEnd(PREFIX, START) - START;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                //Iterate over the settings as they were when iteration started, even if they're reloaded part way through.
+                final Snapshot SNAPSHOT = SNAPSHOTS.get();
+                final String[] KEYS = SNAPSHOT.getSortedKeys();
+                final int START = SNAPSHOT.findPrefixStart(PREFIX);
+                final int END = SNAPSHOT.findPrefixEnd(PREFIX, START);
+
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return index < END;
+                    }
+
+                    @Override
+                    public Map.Entry<String, String> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+
+                        final String KEY = KEYS[index++];
+                        return new SimpleImmutableEntry<>(KEY.substring(PREFIX.length()), SNAPSHOT.get(KEY).getString());
+                    }
+
+                    private int index = START;
+                };
+            }
+
+            @Override
+            public int size() {
+                return PrefixView.this.size();
+            }
+        };
+    }
+
+    private final Supplier<Snapshot> SNAPSHOTS;
+    private final String PREFIX;
+}
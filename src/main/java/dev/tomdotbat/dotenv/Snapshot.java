@@ -0,0 +1,293 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable set of settings, published by the Configuration as a whole.
+ * Alongside the settings, each snapshot keeps a slot for every {@link ConfigurationKey},
+ * filled with the key's Value the first time it is read through the handle. The slots are only allocated once a handle is used,
+ * so publishing a snapshot that is never read through a handle doesn't pay for them.
+ * Values that reference other keys are expanded against the snapshot the first time they are read, and encrypted values are decrypted.
+ */
+/* package-private */ final class Snapshot {
+    /**
+     * Creates a snapshot of the given settings, which must not be modified afterwards.
+     * @param values the settings to publish.
+     */
+    public Snapshot(Map<String, Value> values) {
+        this(values, false);
+    }
+
+    /**
+     * Creates a snapshot of the given settings, which must not be modified afterwards.
+     * @param values the settings to publish.
+     * @param ignoreCase whether keys are looked up ignoring case, which indexes the settings in a case-insensitive table
+     *                   unless they are already held in a map that looks up keys ignoring case.
+     */
+    public Snapshot(Map<String, Value> values, boolean ignoreCase) {
+        VALUES = values;
+        IGNORE_CASE = ignoreCase;
+
+        if (!ignoreCase) LOOKUP = values;
+        else if (values instanceof FrozenTable && ((FrozenTable) values).isIgnoreCase()) LOOKUP = values;
+        else if (values instanceof PersistentMap && ((PersistentMap) values).isIgnoreCase()) LOOKUP = values;
+        else LOOKUP = new FrozenTable(values, true);
+    }
+
+    /**
+     * Gets the settings held by the snapshot.
+     * @return the settings, which must not be modified.
+     */
+    public Map<String, Value> getValues() {
+        return VALUES;
+    }
+
+    /**
+     * Gets the Value of a key.
+     * @param key the key to get the Value of.
+     * @return the key's Value, or null if it doesn't exist.
+     */
+    public Value get(String key) {
+        final Value VALUE = LOOKUP.get(key);
+        if (VALUE != null && !VALUE.isResolved()) resolve(key, VALUE, new ArrayList<>());
+
+        return VALUE;
+    }
+
+    /**
+     * Gets the Value of a key through its handle, filling the handle's slot on first use.
+     * Racing threads may both fill the slot, but always with the same Value.
+     * @param key the handle of the key to get the Value of.
+     * @return the key's Value, or null if it doesn't exist.
+     */
+    public Value get(ConfigurationKey key) {
+        //Racing threads may both allocate the slots, which only loses the Values cached in one of them.
+        Value[] slots = this.slots;
+        if (slots == null) this.slots = slots = new Value[ConfigurationKey.getSlotCount()];
+
+        final int SLOT = key.getSlot();
+        if (SLOT >= slots.length) return get(key.getName());
+
+        final Value CACHED = slots[SLOT];
+        if (CACHED != null) {
+            if (CACHED == ABSENT) return null;
+
+            //Another thread may have filled the slot without its resolved String being visible yet.
+            if (!CACHED.isResolved()) resolve(key.getName(), CACHED, new ArrayList<>());
+            return CACHED;
+        }
+
+        final Value VALUE = get(key.getName());
+        slots[SLOT] = VALUE != null ? VALUE : ABSENT;
+
+        return VALUE;
+    }
+
+    /**
+     * Gets a key as it is stored in the snapshot, which may differ in case from the given key if keys are looked up ignoring case.
+     * @param key the key to look up.
+     * @return the stored key, or null if the snapshot doesn't have it.
+     */
+    public String getKey(String key) {
+        if (LOOKUP instanceof FrozenTable) return ((FrozenTable) LOOKUP).getKey(key);
+        if (LOOKUP instanceof PersistentMap) return ((PersistentMap) LOOKUP).getKey(key);
+        return LOOKUP.containsKey(key) ? key : null;
+    }
+
+    /**
+     * Gets the keys of the snapshot in sorted order, sorting them the first time they're needed.
+     * Keys are sorted ignoring case if they're looked up ignoring case.
+     * @return the sorted keys, which must not be modified.
+     */
+    public String[] getSortedKeys() {
+        String[] sorted = sortedKeys;
+        if (sorted != null) return sorted;
+
+        //Racing threads may both sort the keys, but always into the same order.
+        sorted = VALUES.keySet().toArray(new String[0]);
+        Arrays.sort(sorted, IGNORE_CASE ? String.CASE_INSENSITIVE_ORDER : Comparator.naturalOrder());
+        sortedKeys = sorted;
+
+        return sorted;
+    }
+
+    /**
+     * Finds the first of the sorted keys that starts with the given prefix, or where it would be if there isn't one.
+     * @param prefix the prefix to search for.
+     * @return the index of the first key in {@link #getSortedKeys()} that isn't before the prefix.
+     */
+    public int findPrefixStart(String prefix) {
+        final String[] KEYS = getSortedKeys();
+        int low = 0;
+        int high = KEYS.length;
+
+        while (low < high) {
+            final int MIDDLE = (low + high) >>> 1;
+            final int COMPARISON = IGNORE_CASE ? KEYS[MIDDLE].compareToIgnoreCase(prefix) : KEYS[MIDDLE].compareTo(prefix);
+
+            if (COMPARISON < 0) low = MIDDLE + 1;
+            else high = MIDDLE;
+        }
+
+        return low;
+    }
+
+    /**
+     * Finds the end of the run of sorted keys that start with the given prefix.
+     * @param prefix the prefix to search for.
+     * @param start the start of the run, as found by {@link #findPrefixStart(String)}.
+     * @return the index after the last key in {@link #getSortedKeys()} that starts with the prefix.
+     */
+    public int findPrefixEnd(String prefix, int start) {
+        final String[] KEYS = getSortedKeys();
+        int low = start;
+        int high = KEYS.length;
+
+        //Every key starting with the prefix sorts together, directly after the start.
+        while (low < high) {
+            final int MIDDLE = (low + high) >>> 1;
+
+            if (KEYS[MIDDLE].regionMatches(IGNORE_CASE, 0, prefix, 0, prefix.length())) low = MIDDLE + 1;
+            else high = MIDDLE;
+        }
+
+        return low;
+    }
+
+    /**
+     * Checks that the references of the given keys can be expanded, without expanding them.
+     * Only keys that are checked can be part of a new cycle, so only the changed keys need checking when the rest are known to be sound.
+     * @param keys the keys to check.
+     * @param strict whether a reference to a key that doesn't exist is an error, rather than being expanded to nothing.
+     * @throws IllegalArgumentException if a key refers back to itself through its references,
+     *         or refers to a key that doesn't exist while references are strict.
+     */
+    public void checkReferences(Collection<String> keys, boolean strict) {
+        final Set<String> CHECKED = new HashSet<>();
+        final List<String> PATH = new ArrayList<>();
+
+        for (final String KEY: keys) {
+            final Value VALUE = LOOKUP.get(KEY);
+            if (VALUE != null) checkReferences(KEY, VALUE, strict, CHECKED, PATH);
+        }
+    }
+
+    /**
+     * Checks the references of a single Value, following them depth-first.
+     * @param key the key of the Value.
+     * @param value the Value to check.
+     * @param strict whether a reference to a key that doesn't exist is an error.
+     * @param checked the keys already found to be sound, which aren't followed again.
+     * @param path the keys currently being followed, used to detect references that lead back to themselves.
+     * @throws IllegalArgumentException if the Value's references form a cycle or, while strict, refer to a missing key.
+     */
+    private void checkReferences(final String key, final Value value, final boolean strict, final Set<String> checked, final List<String> path) {
+        if (value.getReferences().length == 0 || checked.contains(key)) return;
+
+        if (path.contains(key))
+            throw new IllegalArgumentException("Circular reference between keys: " + String.join(" -> ", path) + " -> " + key);
+
+        path.add(key);
+
+        for (final String REFERENCE: value.getReferences()) {
+            final Value REFERENCED = LOOKUP.get(REFERENCE);
+
+            if (REFERENCED != null) checkReferences(getStoredKey(REFERENCE), REFERENCED, strict, checked, path);
+            else if (strict) throw new IllegalArgumentException("The key " + key + " references " + REFERENCE + ", which isn't set.");
+        }
+
+        path.remove(path.size() - 1);
+        checked.add(key);
+    }
+
+    /**
+     * Expands the references of a Value, first resolving the Values it references.
+     * @param key the key of the Value.
+     * @param value the Value to resolve.
+     * @param path the keys currently being resolved, used to detect references that lead back to themselves.
+     * @return the expanded String value.
+     * @throws IllegalStateException if the value refers back to itself through its references, or can't be decrypted.
+     *         Cycles are rejected before settings are published, so they can only be met here if that check was skipped.
+     */
+    private String resolve(final String key, final Value value, final List<String> path) {
+        if (value.isResolved()) return value.getString();
+
+        if (value.isEncrypted()) {
+            final String DECRYPTED = value.decrypt(key);
+            value.setResolved(DECRYPTED);
+
+            return DECRYPTED;
+        }
+
+        if (path.contains(key))
+            throw new IllegalStateException("Circular reference between keys: " + String.join(" -> ", path) + " -> " + key);
+
+        path.add(key);
+
+        final String RESOLVED = Interpolation.expand(value.getRaw(), name -> {
+            final Value REFERENCED = LOOKUP.get(name);
+            return REFERENCED != null ? resolve(getStoredKey(name), REFERENCED, path) : null;
+        });
+
+        path.remove(path.size() - 1);
+        value.setResolved(RESOLVED);
+
+        return RESOLVED;
+    }
+
+    /**
+     * Gets the stored key that a reference found, so a key is always followed under the same name whatever case it was referenced in.
+     * @param reference the name of a reference to a key that exists.
+     * @return the stored key.
+     */
+    private String getStoredKey(final String reference) {
+        return IGNORE_CASE ? getKey(reference) : reference;
+    }
+
+    private final Map<String, Value> VALUES;
+
+    /**
+     * The settings to look keys up in, which is either the settings themselves or a case-insensitive table of them.
+     */
+    private final Map<String, Value> LOOKUP;
+    private final boolean IGNORE_CASE;
+
+    /**
+     * The Value of each handle's key, or null until a key is first read through its handle.
+     */
+    private Value[] slots;
+
+    /**
+     * The keys in sorted order, or null until they're first needed.
+     */
+    private volatile String[] sortedKeys;
+
+    /**
+     * Fills the slots of keys that don't exist in the snapshot, so they aren't looked up again.
+     */
+    private static final Value ABSENT = new Value("");
+}
@@ -0,0 +1,47 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread-safe pool of Strings shared by many Configurations, so keys and values repeated between their Files
+ * are only held in memory once. Unlike {@link String#intern()}, the pool is released along with whatever owns it.
+ */
+/* package-private */ final class StringPool {
+    /**
+     * Gets the pooled String equal to the given String, adding it to the pool if there isn't one.
+     * @param string the String to intern.
+     * @return the pooled String.
+     */
+    public String intern(String string) {
+        final String POOLED = STRINGS.putIfAbsent(string, string);
+        return POOLED != null ? POOLED : string;
+    }
+
+    /**
+     * Gets the number of distinct Strings in the pool.
+     * @return the size of the pool.
+     */
+    public int size() {
+        return STRINGS.size();
+    }
+
+    private final ConcurrentMap<String, String> STRINGS = new ConcurrentHashMap<>();
+}
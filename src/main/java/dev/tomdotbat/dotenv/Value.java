@@ -0,0 +1,205 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+/**
+ * Represents the value of a single setting, remembering the result of parsing it into a typed value.
+ * A Value is never changed once created, so setting or reloading a key replaces its Value and the cached result with it.
+ * Values that reference other keys with {@code ${KEY}} are expanded by the {@link Snapshot} the first time they are read, unless they were single-quoted,
+ * and are replaced whenever a key they depend on changes, so the expanded String is cached in the same way.
+ * Encrypted values are decrypted by the Snapshot on first read in the same way, so only the secrets that are used are ever decrypted.
+ */
+/* package-private */ final class Value {
+    /**
+     * Creates a Value from the String stored in the Environment File.
+     * @param raw the String value of the setting.
+     */
+    public Value(String raw) {
+        this(raw, false);
+    }
+
+    /**
+     * Creates a Value from the String stored in the Environment File, optionally using it exactly as it's written.
+     * @param raw the String value of the setting.
+     * @param literal whether the value is used as it is without expanding references, as single-quoted values are.
+     */
+    public Value(String raw, boolean literal) {
+        RAW = raw;
+        REFERENCES = literal ? NO_REFERENCES : Interpolation.findReferences(raw);
+        CIPHER = null;
+        resolved = literal || !Interpolation.needsExpanding(raw) ? raw : null;
+    }
+
+    /**
+     * Creates a Value from an encrypted String stored in the Environment File.
+     * The Value is only decrypted by the {@link Snapshot} the first time it is read, and isn't expanded.
+     * @param raw the encrypted String value of the setting.
+     * @param cipher the cipher to decrypt the value with.
+     */
+    public Value(String raw, ValueCipher cipher) {
+        RAW = raw;
+        REFERENCES = NO_REFERENCES;
+        CIPHER = cipher;
+    }
+
+    /**
+     * Gets the String value of the setting as it's stored in the Environment File, without any references expanded.
+     * @return the String value.
+     */
+    public String getRaw() {
+        return RAW;
+    }
+
+    /**
+     * Gets the String value of the setting with any references to other keys expanded.
+     * @return the expanded or decrypted String value, or null if it hasn't been resolved by a Snapshot yet.
+     */
+    public String getString() {
+        return resolved;
+    }
+
+    /**
+     * Gets the keys referenced by the value.
+     * @return the referenced keys, which must not be modified.
+     */
+    public String[] getReferences() {
+        return REFERENCES;
+    }
+
+    /**
+     * Returns whether the value is encrypted.
+     * @return true if the value must be decrypted before it can be read.
+     */
+    public boolean isEncrypted() {
+        return CIPHER != null;
+    }
+
+    /**
+     * Decrypts the value, without caching the result.
+     * @param key the key of the setting, for the Exception message.
+     * @return the decrypted String value.
+     * @throws IllegalStateException if the value can't be decrypted with the cipher's key.
+     */
+    public String decrypt(String key) {
+        return CIPHER.decrypt(key, RAW);
+    }
+
+    /**
+     * Returns whether the value's references have been expanded.
+     * @return true if the value has been resolved or has nothing to resolve.
+     */
+    public boolean isResolved() {
+        return resolved != null;
+    }
+
+    /**
+     * Records the value with its references expanded.
+     * @param resolved the expanded String value.
+     */
+    public void setResolved(String resolved) {
+        this.resolved = resolved;
+    }
+
+    /**
+     * Gets a Value that can be resolved again, for when a key it references has changed.
+     * @return a new Value with the same String, or this Value if it doesn't reference any keys.
+     */
+    public Value copy() {
+        return REFERENCES.length == 0 ? this : new Value(RAW);
+    }
+
+    /**
+     * Gets the value parsed by the given parser, only parsing it the first time the parser is used.
+     * @param PARSER the parser to use.
+     * @param STACK_TRACE whether an Exception thrown for an invalid value should have a stack trace.
+     * @param <T> the type of value produced.
+     * @param <E> the type of Exception thrown when the value isn't in the right format.
+     * @return the parsed value.
+     * @throws E if the value isn't in the right format.
+     */
+    @SuppressWarnings("unchecked")
+    public <T, E extends Exception> T get(final ValueParser<T, E> PARSER, final boolean STACK_TRACE) throws E {
+        final Parsed CACHED = parsed;
+        if (CACHED != null && CACHED.PARSER == PARSER && CACHED.RESULT != INVALID)
+            return (T) CACHED.RESULT;
+
+        //Invalid values are parsed again so the Exception describing them can be thrown.
+        final T RESULT = PARSER.parse(resolved, STACK_TRACE);
+        parsed = new Parsed(PARSER, RESULT);
+
+        return RESULT;
+    }
+
+    /**
+     * Gets the value parsed by the given parser without throwing, only parsing it the first time the parser is used.
+     * Invalid values are remembered as well, so looking them up again doesn't create another Exception.
+     * @param PARSER the parser to use.
+     * @param <T> the type of value produced.
+     * @return the parsed value, or null if the value isn't in the right format.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T find(final ValueParser<T, ?> PARSER) {
+        final Parsed CACHED = parsed;
+        if (CACHED != null && CACHED.PARSER == PARSER)
+            return CACHED.RESULT != INVALID ? (T) CACHED.RESULT : null;
+
+        try {
+            return get(PARSER, false);
+        }
+        catch (Exception ex) {
+            parsed = new Parsed(PARSER, INVALID);
+            return null;
+        }
+    }
+
+    private final String RAW;
+    private final String[] REFERENCES;
+    private final ValueCipher CIPHER;
+
+    /**
+     * The value with its references expanded. Racing threads may each resolve the value,
+     * but Strings are immutable, so a thread will either see the complete String or none at all.
+     */
+    private String resolved;
+
+    /**
+     * The last parsed value. Racing threads may each parse the value once, but will always see a complete result,
+     * as a Parsed is only ever published through its final fields.
+     */
+    private Parsed parsed;
+
+    private static final String[] NO_REFERENCES = new String[0];
+
+    /**
+     * The result cached for a value that the parser rejected.
+     */
+    private static final Object INVALID = new Object();
+
+    /**
+     * Pairs a parsed value with the parser that produced it.
+     */
+    private static final class Parsed {
+        private Parsed(ValueParser<?, ?> parser, Object result) {
+            PARSER = parser;
+            RESULT = result;
+        }
+
+        private final ValueParser<?, ?> PARSER;
+        private final Object RESULT;
+    }
+}
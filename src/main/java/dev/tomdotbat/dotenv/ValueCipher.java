@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Encrypts and decrypts setting values with AES-GCM.
+ * <p>
+ * An encrypted value is written as {@code enc:} followed by the Base64 of a random 12 byte IV and the ciphertext with its tag.
+ * The key is a Base64 encoded 128, 192 or 256-bit AES key, such as one created by {@code openssl rand -base64 32}.
+ */
+/* package-private */ final class ValueCipher {
+    /**
+     * Creates a cipher for the given key.
+     * @param KEY the raw AES key.
+     * @throws IllegalArgumentException if the key isn't 16, 24 or 32 bytes long.
+     */
+    public ValueCipher(final byte[] KEY) {
+        if (KEY.length != 16 && KEY.length != 24 && KEY.length != 32)
+            throw new IllegalArgumentException("An encryption key must be 128, 192 or 256 bits long, but was " + KEY.length * 8 + ".");
+
+        this.KEY = new SecretKeySpec(KEY, "AES");
+    }
+
+    /**
+     * Creates a cipher from a Base64 encoded key stored in a file.
+     * @param path the path of the keyfile.
+     * @return the cipher.
+     * @throws IOException if an error occurs when reading the keyfile.
+     * @throws IllegalArgumentException if the keyfile doesn't hold a valid key.
+     */
+    public static ValueCipher fromKeyFile(Path path) throws IOException {
+        return new ValueCipher(Base64.getDecoder().decode(Files.readString(path).strip()));
+    }
+
+    /**
+     * Creates a cipher from a Base64 encoded key held in an environment variable.
+     * @param variable the name of the environment variable.
+     * @return the cipher.
+     * @throws IllegalArgumentException if the variable isn't set or doesn't hold a valid key.
+     */
+    public static ValueCipher fromEnvironment(String variable) {
+        final String KEY = System.getenv(variable);
+        if (KEY == null)
+            throw new IllegalArgumentException("The environment variable \"" + variable + "\" holding the encryption key isn't set.");
+
+        return new ValueCipher(Base64.getDecoder().decode(KEY.strip()));
+    }
+
+    /**
+     * Returns whether a value is encrypted.
+     * @param raw the value as it's stored in the Environment File.
+     * @return true if the value starts with {@code enc:}.
+     */
+    public static boolean isEncrypted(String raw) {
+        return raw.startsWith(PREFIX);
+    }
+
+    /**
+     * Encrypts a value with a new random IV.
+     * @param plaintext the value to encrypt.
+     * @return the encrypted value, starting with {@code enc:}.
+     */
+    public String encrypt(String plaintext) {
+        final byte[] IV = new byte[IV_LENGTH];
+        RANDOM.nextBytes(IV);
+
+        try {
+            final Cipher CIPHER = Cipher.getInstance(TRANSFORMATION);
+            CIPHER.init(Cipher.ENCRYPT_MODE, KEY, new GCMParameterSpec(TAG_LENGTH, IV));
+
+            final byte[] CIPHERTEXT = CIPHER.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+            return PREFIX + Base64.getEncoder().encodeToString(ByteBuffer.allocate(IV_LENGTH + CIPHERTEXT.length).put(IV).put(CIPHERTEXT).array());
+        }
+        catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("AES-GCM isn't available: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Decrypts an encrypted value.
+     * @param key the key of the setting, for the Exception message.
+     * @param raw the encrypted value, starting with {@code enc:}.
+     * @return the decrypted value.
+     * @throws IllegalStateException if the value is malformed, was encrypted with another key or has been tampered with.
+     */
+    public String decrypt(String key, String raw) {
+        try {
+            final byte[] BYTES = Base64.getDecoder().decode(raw.substring(PREFIX.length()));
+            if (BYTES.length < IV_LENGTH)
+                throw new IllegalArgumentException("The encrypted value is too short.");
+
+            final Cipher CIPHER = Cipher.getInstance(TRANSFORMATION);
+            CIPHER.init(Cipher.DECRYPT_MODE, KEY, new GCMParameterSpec(TAG_LENGTH, BYTES, 0, IV_LENGTH));
+
+            return new String(CIPHER.doFinal(BYTES, IV_LENGTH, BYTES.length - IV_LENGTH), StandardCharsets.UTF_8);
+        }
+        catch (GeneralSecurityException | IllegalArgumentException ex) {
+            throw new IllegalStateException("The value of \"" + key + "\" couldn't be decrypted: " + ex.getMessage(), ex);
+        }
+    }
+
+    private static final String PREFIX = "enc:";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+
+    /**
+     * The length of the authentication tag in bits.
+     */
+    private static final int TAG_LENGTH = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SecretKeySpec KEY;
+}
@@ -0,0 +1,35 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+/**
+ * Parses a setting's String value into a typed value.
+ * @param <T> the type of value produced.
+ * @param <E> the type of Exception thrown when the String isn't in the right format.
+ */
+@FunctionalInterface
+/* package-private */ interface ValueParser<T, E extends Exception> {
+    /**
+     * Parses a typed value from a String.
+     * @param string the String to parse.
+     * @param stackTrace whether an Exception thrown for an invalid String should have a stack trace, if the parser supports it.
+     * @return the parsed value.
+     * @throws E if the String isn't in the right format.
+     */
+    T parse(String string, boolean stackTrace) throws E;
+}
@@ -0,0 +1,292 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import dev.tomdotbat.dotenv.exception.BooleanFormatException;
+import dev.tomdotbat.dotenv.exception.ValueFormatException;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * The parsers used by the typed getters of the Configuration.
+ */
+/* package-private */ final class ValueParsers {
+    private ValueParsers() {}
+
+    public static final ValueParser<Integer, NumberFormatException> INTEGER = ValueParsers::parseInteger;
+    public static final ValueParser<Long, NumberFormatException> LONG = ValueParsers::parseLong;
+    public static final ValueParser<Double, NumberFormatException> DOUBLE = ValueParsers::parseDouble;
+    public static final ValueParser<Boolean, BooleanFormatException> BOOLEAN = ValueParsers::parseBoolean;
+    public static final ValueParser<Duration, ValueFormatException> DURATION = ValueParsers::parseDuration;
+    public static final ValueParser<Long, ValueFormatException> BYTE_SIZE = ValueParsers::parseByteSize;
+    public static final ValueParser<List<String>, RuntimeException> LIST = (string, stackTrace) -> parseList(string);
+
+    /**
+     * Gets the parser that produces a type of value.
+     * @param type the type of value.
+     * @return the parser, or null for Strings, which are used as they are.
+     */
+    public static ValueParser<?, ?> forType(ConfigurationMetrics.ValueType type) {
+        switch (type) {
+            case INTEGER: return INTEGER;
+            case LONG: return LONG;
+            case DOUBLE: return DOUBLE;
+            case BOOLEAN: return BOOLEAN;
+            case DURATION: return DURATION;
+            case BYTE_SIZE: return BYTE_SIZE;
+            case LIST: return LIST;
+            default: return null;
+        }
+    }
+
+    /**
+     * Gets the type of value produced by one of the parsers, for recording metrics.
+     * @param parser the parser.
+     * @return the type of value the parser produces.
+     */
+    public static ConfigurationMetrics.ValueType getType(ValueParser<?, ?> parser) {
+        if (parser == INTEGER) return ConfigurationMetrics.ValueType.INTEGER;
+        if (parser == LONG) return ConfigurationMetrics.ValueType.LONG;
+        if (parser == DOUBLE) return ConfigurationMetrics.ValueType.DOUBLE;
+        if (parser == BOOLEAN) return ConfigurationMetrics.ValueType.BOOLEAN;
+        if (parser == DURATION) return ConfigurationMetrics.ValueType.DURATION;
+        if (parser == BYTE_SIZE) return ConfigurationMetrics.ValueType.BYTE_SIZE;
+        if (parser == LIST) return ConfigurationMetrics.ValueType.LIST;
+
+        throw new IllegalArgumentException("Unknown parser.");
+    }
+
+    /**
+     * Parses an integer from a String. Without stack traces, the String is checked before it is parsed,
+     * so an invalid integer never creates the JDK's NumberFormatException with its stack trace.
+     * @param string the String to parse an integer from.
+     * @param stackTrace whether the Exception thrown for an invalid String should have a stack trace.
+     * @return the parsed integer.
+     * @throws NumberFormatException if the String isn't a valid integer.
+     */
+    public static Integer parseInteger(String string, boolean stackTrace) throws NumberFormatException {
+        if (!stackTrace && !isInteger(string, Integer.MIN_VALUE, Integer.MAX_VALUE)) throw new StacklessNumberFormatException(string);
+        return Integer.valueOf(string);
+    }
+
+    /**
+     * Parses a long from a String, checking it first when stack traces are disabled in the same way as {@link #parseInteger}.
+     * @param string the String to parse a long from.
+     * @param stackTrace whether the Exception thrown for an invalid String should have a stack trace.
+     * @return the parsed long.
+     * @throws NumberFormatException if the String isn't a valid long.
+     */
+    public static Long parseLong(String string, boolean stackTrace) throws NumberFormatException {
+        if (!stackTrace && !isInteger(string, Long.MIN_VALUE, Long.MAX_VALUE)) throw new StacklessNumberFormatException(string);
+        return Long.valueOf(string);
+    }
+
+    /**
+     * Parses a double from a String, checking it first when stack traces are disabled in the same way as {@link #parseInteger}.
+     * @param string the String to parse a double from.
+     * @param stackTrace whether the Exception thrown for an invalid String should have a stack trace.
+     * @return the parsed double.
+     * @throws NumberFormatException if the String isn't a valid double.
+     */
+    public static Double parseDouble(String string, boolean stackTrace) throws NumberFormatException {
+        if (!stackTrace && !DOUBLE_PATTERN.matcher(string).matches()) throw new StacklessNumberFormatException(string);
+        return Double.valueOf(string);
+    }
+
+    /**
+     * Parses a boolean value from a String.
+     * @param string the String to parse a boolean value from.
+     * @param stackTrace whether the Exception thrown for an invalid String should have a stack trace.
+     * @return the boolean value of the String.
+     * @throws BooleanFormatException if the String isn't in the format of a boolean value.
+     */
+    public static Boolean parseBoolean(String string, boolean stackTrace) throws BooleanFormatException {
+        if (string.equalsIgnoreCase("true")) return Boolean.TRUE;
+        else if (string.equalsIgnoreCase("false")) return Boolean.FALSE;
+
+        throw new BooleanFormatException("\"" + string + "\" cannot be parsed into a boolean value.", stackTrace);
+    }
+
+    /**
+     * Parses a Duration from a String, either in ISO-8601 format (PT30S) or as a whole number followed by
+     * one of the units ns, us, ms, s, m, h or d. A number without a unit is taken as milliseconds.
+     * @param string the String to parse a Duration from.
+     * @param stackTrace whether the Exception thrown for an invalid String should have a stack trace.
+     * @return the Duration represented by the String.
+     * @throws ValueFormatException if the String isn't in the format of a Duration.
+     */
+    public static Duration parseDuration(String string, boolean stackTrace) throws ValueFormatException {
+        final String TEXT = string.trim();
+
+        try {
+            if (TEXT.startsWith("P") || TEXT.startsWith("-P") || TEXT.startsWith("p") || TEXT.startsWith("-p"))
+                return Duration.parse(TEXT);
+
+            final int UNIT_START = findUnitStart(TEXT);
+            final long AMOUNT = Long.parseLong(TEXT.substring(0, UNIT_START));
+
+            switch (TEXT.substring(UNIT_START).trim().toLowerCase(Locale.ROOT)) {
+                case "ns": return Duration.of(AMOUNT, ChronoUnit.NANOS);
+                case "us": return Duration.of(AMOUNT, ChronoUnit.MICROS);
+                case "": case "ms": return Duration.of(AMOUNT, ChronoUnit.MILLIS);
+                case "s": return Duration.of(AMOUNT, ChronoUnit.SECONDS);
+                case "m": return Duration.of(AMOUNT, ChronoUnit.MINUTES);
+                case "h": return Duration.of(AMOUNT, ChronoUnit.HOURS);
+                case "d": return Duration.of(AMOUNT, ChronoUnit.DAYS);
+            }
+        }
+        catch (DateTimeParseException | ArithmeticException | NumberFormatException ignored) {}
+
+        throw new ValueFormatException("\"" + string + "\" cannot be parsed into a duration.", stackTrace);
+    }
+
+    /**
+     * Parses a number of bytes from a String, as a whole number optionally followed by one of the units
+     * B, K, M, G or T. Units are binary multiples, and may also be written as KB or KiB.
+     * @param string the String to parse a byte size from.
+     * @param stackTrace whether the Exception thrown for an invalid String should have a stack trace.
+     * @return the number of bytes represented by the String.
+     * @throws ValueFormatException if the String isn't in the format of a byte size.
+     */
+    public static Long parseByteSize(String string, boolean stackTrace) throws ValueFormatException {
+        final String TEXT = string.trim();
+
+        try {
+            final int UNIT_START = findUnitStart(TEXT);
+            final long AMOUNT = Long.parseLong(TEXT.substring(0, UNIT_START));
+
+            switch (TEXT.substring(UNIT_START).trim().toUpperCase(Locale.ROOT)) {
+                case "": case "B": return AMOUNT;
+                case "K": case "KB": case "KIB": return Math.multiplyExact(AMOUNT, 1L << 10);
+                case "M": case "MB": case "MIB": return Math.multiplyExact(AMOUNT, 1L << 20);
+                case "G": case "GB": case "GIB": return Math.multiplyExact(AMOUNT, 1L << 30);
+                case "T": case "TB": case "TIB": return Math.multiplyExact(AMOUNT, 1L << 40);
+            }
+        }
+        catch (ArithmeticException | NumberFormatException ignored) {}
+
+        throw new ValueFormatException("\"" + string + "\" cannot be parsed into a byte size.", stackTrace);
+    }
+
+    /**
+     * Parses a comma-separated list from a String, trimming each element and skipping empty ones.
+     * @param string the String to parse a list from.
+     * @return an unmodifiable list of the String's elements.
+     */
+    public static List<String> parseList(String string) {
+        final List<String> ELEMENTS = new ArrayList<>();
+        int start = 0;
+
+        for (int i = 0; i <= string.length(); i++) {
+            if (i < string.length() && string.charAt(i) != ',') continue;
+
+            final String ELEMENT = string.substring(start, i).trim();
+            if (!ELEMENT.isEmpty()) ELEMENTS.add(ELEMENT);
+
+            start = i + 1;
+        }
+
+        return Collections.unmodifiableList(ELEMENTS);
+    }
+
+    /**
+     * Returns whether a String would be accepted by {@link Long#parseLong(String)}, and is within the given range.
+     * The digits are accumulated as a negative number in the same way as the JDK, as the negative range is the larger one.
+     * @param TEXT the String to check.
+     * @param MIN the smallest value allowed.
+     * @param MAX the largest value allowed.
+     * @return true if the String is a valid integer within the range.
+     */
+    private static boolean isInteger(final String TEXT, final long MIN, final long MAX) {
+        final int LENGTH = TEXT.length();
+        if (LENGTH == 0) return false;
+
+        final char FIRST = TEXT.charAt(0);
+        final boolean NEGATIVE = FIRST == '-';
+
+        int index = NEGATIVE || FIRST == '+' ? 1 : 0;
+        if (index == LENGTH) return false;
+
+        final long LIMIT = NEGATIVE ? MIN : -MAX;
+        final long MULTIPLY_MIN = LIMIT / 10;
+        long result = 0;
+
+        for (; index < LENGTH; index++) {
+            final int DIGIT = Character.digit(TEXT.charAt(index), 10);
+            if (DIGIT < 0 || result < MULTIPLY_MIN) return false;
+
+            result *= 10;
+            if (result < LIMIT + DIGIT) return false;
+
+            result -= DIGIT;
+        }
+
+        return true;
+    }
+
+    /**
+     * Finds where the unit starts in a String made up of a whole number followed by a unit.
+     * @param TEXT the trimmed String.
+     * @return the index of the first character after the number.
+     */
+    private static int findUnitStart(final String TEXT) {
+        int index = TEXT.startsWith("-") ? 1 : 0;
+        while (index < TEXT.length() && Character.isDigit(TEXT.charAt(index))) index++;
+
+        return index;
+    }
+
+    /**
+     * A NumberFormatException that never fills in its stack trace, thrown by the numeric parsers while stack traces are disabled.
+     */
+    private static final class StacklessNumberFormatException extends NumberFormatException {
+        /**
+         * Constructs a Stackless Number Format Exception with the same message as the JDK's parsers.
+         * @param string the String that couldn't be parsed.
+         */
+        private StacklessNumberFormatException(String string) {
+            super("For input string: \"" + string + "\"");
+        }
+
+        /**
+         * Skips filling in the stack trace.
+         * @return this Exception.
+         */
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    //The grammar accepted by Double.valueOf, from its documentation.
+    private static final String DIGITS = "(\\p{Digit}+)";
+    private static final String HEX_DIGITS = "(\\p{XDigit}+)";
+    private static final String EXPONENT = "[eE][+-]?" + DIGITS;
+    private static final Pattern DOUBLE_PATTERN = Pattern.compile(
+            "[\\x00-\\x20]*[+-]?(NaN|Infinity|(((" + DIGITS + "(\\.)?(" + DIGITS + "?)(" + EXPONENT + ")?)|"
+            + "(\\.(" + DIGITS + ")(" + EXPONENT + ")?)|"
+            + "(((0[xX]" + HEX_DIGITS + "(\\.)?)|(0[xX]" + HEX_DIGITS + "?(\\.)" + HEX_DIGITS + "))[pP][+-]?" + DIGITS + "))[fFdD]?))[\\x00-\\x20]*"
+    );
+}
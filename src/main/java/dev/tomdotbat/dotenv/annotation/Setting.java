@@ -0,0 +1,49 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Configures how a method of a {@link Settings} interface reads its setting.
+ * <p>
+ * A default is checked against the method's return type when the accessor is generated, so an invalid default fails the build.
+ * Methods with a default return it when the key is missing or invalid, while methods without one throw the same
+ * Exceptions as the Configuration's getters, which the method must declare.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface Setting {
+    /**
+     * The key to read, or empty to read the key named after the method.
+     * @return the key.
+     */
+    String key() default "";
+
+    /**
+     * The value to use when the key is missing or invalid, written as it would be in an Environment File.
+     * Left empty for a setting without a default, or given a single element for one with a default.
+     * @return the default, if there is one.
+     */
+    String[] defaultValue() default {};
+}
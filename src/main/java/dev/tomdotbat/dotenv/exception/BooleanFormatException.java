@@ -20,7 +20,7 @@ package dev.tomdotbat.dotenv.exception;
 /**
  * An Exception used by the Configuration when a Boolean fails to be parsed from a String.
  */
-public class BooleanFormatException extends Exception {
+public class BooleanFormatException extends ValueFormatException {
     /**
      * Constructs a Boolean Format Exception.
      * @param errorMessage the error message to show in the Exception.
@@ -28,4 +28,13 @@ public class BooleanFormatException extends Exception {
     public BooleanFormatException(String errorMessage) {
         super(errorMessage);
     }
+
+    /**
+     * Constructs a Boolean Format Exception, optionally without a stack trace or suppressed Exceptions.
+     * @param errorMessage the error message to show in the Exception.
+     * @param writableStackTrace whether the stack trace should be filled in and suppressed Exceptions recorded.
+     */
+    public BooleanFormatException(String errorMessage, boolean writableStackTrace) {
+        super(errorMessage, writableStackTrace);
+    }
 }
\ No newline at end of file
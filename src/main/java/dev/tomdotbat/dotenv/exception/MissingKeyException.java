@@ -28,4 +28,13 @@ public class MissingKeyException extends Exception {
     public MissingKeyException(String errorMessage) {
         super(errorMessage);
     }
+
+    /**
+     * Constructs a Missing Key Exception, optionally without a stack trace or suppressed Exceptions.
+     * @param errorMessage the error message to show in the Exception.
+     * @param writableStackTrace whether the stack trace should be filled in and suppressed Exceptions recorded.
+     */
+    public MissingKeyException(String errorMessage, boolean writableStackTrace) {
+        super(errorMessage, null, writableStackTrace, writableStackTrace);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv.exception;
+
+import java.util.List;
+
+/**
+ * An Exception used when the Configuration's settings don't match its schema, listing every setting that is invalid.
+ * Nothing is published when it is thrown, so the Configuration keeps the settings it had before.
+ */
+public class SchemaViolationException extends RuntimeException {
+    /**
+     * Constructs a Schema Violation Exception.
+     * @param violations a description of each setting that doesn't match the schema.
+     */
+    public SchemaViolationException(List<String> violations) {
+        super(violations.size() + " setting(s) don't match the schema:\n  " + String.join("\n  ", violations));
+        VIOLATIONS = List.copyOf(violations);
+    }
+
+    /**
+     * Gets a description of each setting that doesn't match the schema.
+     * @return the violations, in the order the schema declares their keys.
+     */
+    public List<String> getViolations() {
+        return VIOLATIONS;
+    }
+
+    private final List<String> VIOLATIONS;
+}
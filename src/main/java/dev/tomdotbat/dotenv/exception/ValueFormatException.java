@@ -0,0 +1,40 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv.exception;
+
+/**
+ * An Exception used by the Configuration when a value fails to be parsed from a String into the requested type.
+ */
+public class ValueFormatException extends Exception {
+    /**
+     * Constructs a Value Format Exception.
+     * @param errorMessage the error message to show in the Exception.
+     */
+    public ValueFormatException(String errorMessage) {
+        super(errorMessage);
+    }
+
+    /**
+     * Constructs a Value Format Exception, optionally without a stack trace or suppressed Exceptions.
+     * @param errorMessage the error message to show in the Exception.
+     * @param writableStackTrace whether the stack trace should be filled in and suppressed Exceptions recorded.
+     */
+    public ValueFormatException(String errorMessage, boolean writableStackTrace) {
+        super(errorMessage, null, writableStackTrace, writableStackTrace);
+    }
+}
\ No newline at end of file
@@ -19,10 +19,34 @@ package dev.tomdotbat.dotenv;
 
 import dev.tomdotbat.dotenv.exception.BooleanFormatException;
 import dev.tomdotbat.dotenv.exception.MissingKeyException;
+import dev.tomdotbat.dotenv.exception.SchemaViolationException;
+import dev.tomdotbat.dotenv.exception.ValueFormatException;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
@@ -103,11 +127,705 @@ public class ConfigurationTests {
         assertThrows(BooleanFormatException.class, () -> config.getBoolean("TEST_BAD_BOOLEAN"));
     }
 
+    @Test
+    public void testConfigTypedGetters() {
+        config.set("TEST_LONG", 5_000_000_000L + "");
+        config.set("TEST_DOUBLE", "0.25");
+        config.set("TEST_DURATION", "30s");
+        config.set("TEST_ISO_DURATION", "PT1M");
+        config.set("TEST_BYTE_SIZE", "64MiB");
+        config.set("TEST_LIST", " a, b ,,c ");
+
+        assertDoesNotThrow(() -> {
+            assertEquals(5_000_000_000L, config.getLong("TEST_LONG"));
+            assertEquals(0.25, config.getDouble("TEST_DOUBLE"));
+            assertEquals(Duration.ofSeconds(30), config.getDuration("TEST_DURATION"));
+            assertEquals(Duration.ofMinutes(1), config.getDuration("TEST_ISO_DURATION"));
+            assertEquals(64L * 1024 * 1024, config.getByteSize("TEST_BYTE_SIZE"));
+            assertEquals(List.of("a", "b", "c"), config.getList("TEST_LIST"));
+        });
+
+        //Cached values must be replaced when the key is set again.
+        config.set("TEST_DURATION", "5m");
+        assertEquals(Duration.ofMinutes(5), config.getDuration("TEST_DURATION", Duration.ZERO));
+
+        config.set("TEST_BAD_DURATION", "5 fortnights");
+        assertThrows(ValueFormatException.class, () -> config.getDuration("TEST_BAD_DURATION"));
+        assertEquals(Duration.ZERO, config.getDuration("TEST_BAD_DURATION", Duration.ZERO));
+        assertEquals(-1, config.getByteSize("TEST_BAD_BYTE_SIZE", -1));
+        assertEquals(List.of(), config.getList("TEST_BAD_LIST", List.of()));
+    }
+
+    @Test
+    public void testConfigOptionalGetters() {
+        config.set("TEST_OPTIONAL_INTEGER", 42);
+        config.set("TEST_OPTIONAL_BAD_INTEGER", "HELLO");
+
+        assertEquals(OptionalInt.of(42), config.findInteger("TEST_OPTIONAL_INTEGER"));
+        assertEquals(OptionalInt.empty(), config.findInteger("TEST_OPTIONAL_BAD_INTEGER"));
+        assertEquals(OptionalInt.empty(), config.findInteger("TEST_OPTIONAL_MISSING"));
+        assertEquals(OptionalLong.of(42), config.findLong("TEST_OPTIONAL_INTEGER"));
+        assertEquals(Optional.empty(), config.findBoolean("TEST_OPTIONAL_INTEGER"));
+        assertEquals(Optional.of("42"), config.findString("TEST_OPTIONAL_INTEGER"));
+
+        //A cached failure must still be reported by the throwing getter.
+        assertEquals(7, config.getInteger("TEST_OPTIONAL_BAD_INTEGER", 7));
+        assertThrows(NumberFormatException.class, () -> config.getInteger("TEST_OPTIONAL_BAD_INTEGER"));
+
+        config.setStackTracesEnabled(false);
+        final MissingKeyException EXCEPTION = assertThrows(MissingKeyException.class, () -> config.getInteger("TEST_OPTIONAL_MISSING"));
+        final NumberFormatException NUMBER_EXCEPTION = assertThrows(NumberFormatException.class, () -> config.getInteger("TEST_OPTIONAL_BAD_INTEGER"));
+        assertEquals(7, config.getInteger("TEST_OPTIONAL_BAD_INTEGER", 7));
+        config.setStackTracesEnabled(true);
+
+        assertEquals(0, EXCEPTION.getStackTrace().length);
+        assertEquals(0, NUMBER_EXCEPTION.getStackTrace().length);
+
+        final MissingKeyException TRACED_EXCEPTION = assertThrows(MissingKeyException.class, () -> config.getInteger("TEST_OPTIONAL_MISSING"));
+        TRACED_EXCEPTION.addSuppressed(EXCEPTION);
+        assertEquals(1, TRACED_EXCEPTION.getSuppressed().length);
+    }
+
+    @Test
+    public void testConfigKeyHandles() {
+        assertSame(HANDLE_INTEGER, Configuration.key("TEST_HANDLE_INTEGER"));
+
+        config.set("TEST_HANDLE_INTEGER", 10);
+        assertEquals(10, config.getInteger(HANDLE_INTEGER, 0));
+        assertEquals("10", config.getString(HANDLE_INTEGER));
+
+        //Handles must see values published after they were first read.
+        config.set("TEST_HANDLE_INTEGER", 20);
+        assertEquals(20, config.getInteger(HANDLE_INTEGER, 0));
+
+        assertNull(config.getString(HANDLE_MISSING));
+        assertFalse(config.getBoolean(HANDLE_MISSING, false));
+        assertThrows(MissingKeyException.class, () -> config.getBoolean(HANDLE_MISSING));
+
+        config.set("TEST_HANDLE_MISSING", true);
+        assertTrue(config.getBoolean(HANDLE_MISSING, false));
+    }
+
     @Test
     public void testConfigKeysGetter() {
         config.set("TEST_VARIABLE", "HELLO WORLD!");
         assertTrue(config.getKeys().length > 0);
     }
 
+    @Test
+    public void testConfigConcurrentReload() throws Exception {
+        final Path PATH = directory.resolve(".env");
+        Files.writeString(PATH, "STABLE=yes\nFLAG=true\n");
+
+        final Configuration CONFIG = new Configuration(PATH);
+        CONFIG.load();
+
+        //Readers must never observe a half-loaded Configuration while it is reloaded and written to.
+        final AtomicBoolean RUNNING = new AtomicBoolean(true);
+        final AtomicInteger FAILURES = new AtomicInteger();
+        final Thread[] READERS = new Thread[4];
+
+        for (int i = 0; i < READERS.length; i++) {
+            READERS[i] = new Thread(() -> {
+                while (RUNNING.get())
+                    if (!CONFIG.keyEquals("STABLE", "yes") || !CONFIG.getBoolean("FLAG", false))
+                        FAILURES.incrementAndGet();
+            });
+
+            READERS[i].start();
+        }
+
+        for (int i = 0; i < 200; i++) {
+            CONFIG.load();
+            CONFIG.set("COUNTER", i);
+        }
+
+        RUNNING.set(false);
+        for (final Thread READER: READERS) READER.join();
+
+        assertEquals(0, FAILURES.get());
+    }
+
+    @Test
+    public void testConfigWatch() throws Exception {
+        final Path PATH = directory.resolve(".env");
+        Files.writeString(PATH, "UNCHANGED=1\nFLAG=false\nREMOVED=1\n");
+
+        final Configuration CONFIG = new Configuration(PATH);
+        CONFIG.load();
+
+        final CountDownLatch RELOADED = new CountDownLatch(1);
+        final AtomicReference<Set<String>> CHANGED_KEYS = new AtomicReference<>();
+
+        CONFIG.addListener((configuration, changedKeys) -> {
+            CHANGED_KEYS.set(changedKeys);
+            RELOADED.countDown();
+        });
+
+        final CountDownLatch FAILED = new CountDownLatch(1);
+        final AtomicReference<RuntimeException> ERROR = new AtomicReference<>();
+
+        final EnvironmentWatcher WATCHER = CONFIG.watch(Duration.ofMillis(50), exception -> {
+            ERROR.set(exception);
+            FAILED.countDown();
+        });
+
+        try {
+            //Replace the file in one step, so the watcher can't catch it half written.
+            final Path REPLACEMENT = Files.writeString(directory.resolve(".env.new"), "UNCHANGED=1\nFLAG=true\nADDED=1\n");
+            Files.move(REPLACEMENT, PATH, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            assertTrue(RELOADED.await(30, TimeUnit.SECONDS));
+            assertEquals(Set.of("FLAG", "ADDED", "REMOVED"), CHANGED_KEYS.get());
+
+            //A reload that is rejected is reported rather than swallowed, and leaves the settings as they were.
+            final Path CYCLE = Files.writeString(directory.resolve(".env.new"), "UNCHANGED=${ADDED}\nFLAG=true\nADDED=${UNCHANGED}\n");
+            Files.move(CYCLE, PATH, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            assertTrue(FAILED.await(30, TimeUnit.SECONDS));
+            assertTrue(ERROR.get() instanceof IllegalArgumentException);
+        }
+        finally {
+            WATCHER.close();
+        }
+
+        assertTrue(CONFIG.getBoolean("FLAG", false));
+        assertEquals("1", CONFIG.getString("ADDED"));
+    }
+
+    @Test
+    public void testConfigDirtySave() throws Exception {
+        final Path PATH = directory.resolve(".env");
+        Files.writeString(PATH, "A=1\n");
+
+        final Configuration CONFIG = new Configuration(PATH);
+        CONFIG.load();
+
+        //Saving without any changes must not touch the file.
+        Files.writeString(PATH, "A=2\n");
+        CONFIG.save();
+        assertEquals("A=2\n", Files.readString(PATH));
+
+        CONFIG.set("B", "2");
+        CONFIG.save();
+        assertEquals("A=2\nB=2\n", Files.readString(PATH));
+
+        //A value that could never be saved is rejected when it is set.
+        assertThrows(IllegalArgumentException.class, () -> CONFIG.set("C", "x\nD=1"));
+        assertNull(CONFIG.getString("C"));
+    }
+
+    @Test
+    public void testConfigWriteBehind() throws Exception {
+        final Path PATH = directory.resolve(".env");
+        Files.writeString(PATH, "");
+
+        final Configuration CONFIG = new Configuration(PATH);
+        CONFIG.enableWriteBehind(Duration.ofMinutes(1));
+
+        for (int i = 0; i < 100; i++)
+            CONFIG.set("COUNTER", i);
+
+        //Nothing is written until the delay passes, or write-behind is disabled.
+        assertEquals("", Files.readString(PATH));
+
+        CONFIG.disableWriteBehind();
+        assertEquals("COUNTER=99\n", Files.readString(PATH));
+
+        //A failed background save is reported, and tried again until the keys are written.
+        Files.delete(PATH);
+        Files.createDirectory(PATH);
+
+        final CountDownLatch FAILED = new CountDownLatch(1);
+        CONFIG.enableWriteBehind(Duration.ofMillis(10), ex -> FAILED.countDown());
+        CONFIG.set("COUNTER", 100);
+        assertTrue(FAILED.await(5, TimeUnit.SECONDS));
+
+        Files.delete(PATH);
+        Files.writeString(PATH, "");
+
+        final long DEADLINE = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Files.readString(PATH).equals("COUNTER=100\n") && System.nanoTime() < DEADLINE)
+            Thread.sleep(10);
+
+        assertEquals("COUNTER=100\n", Files.readString(PATH));
+        CONFIG.disableWriteBehind();
+    }
+
+    @Test
+    public void testConfigLayers() throws Exception {
+        final Path LOCAL = directory.resolve(".env.local");
+        Files.writeString(directory.resolve(".env"), "NAME=base\nPORT=80\nHOST=localhost\n");
+        Files.writeString(LOCAL, "PORT=8080\n");
+
+        //The profile's File doesn't exist, so it is an empty layer.
+        final Configuration CONFIG = new Configuration(List.of(
+                directory.resolve(".env.production"), LOCAL, directory.resolve(".env")
+        ), false);
+        CONFIG.load();
+
+        assertEquals("base", CONFIG.getString("NAME"));
+        assertEquals(8080, CONFIG.getInteger("PORT", 0));
+
+        CONFIG.set("NAME", "override");
+
+        //Reloading a layer only resolves its changed keys again, keeping values set in code on top.
+        final AtomicReference<Set<String>> CHANGED_KEYS = new AtomicReference<>();
+        CONFIG.addListener((configuration, changedKeys) -> CHANGED_KEYS.set(changedKeys));
+
+        Files.writeString(LOCAL, "NAME=local\nHOST=example.com\n");
+        CONFIG.reloadLayer(LOCAL);
+
+        assertEquals(Set.of("PORT", "HOST"), CHANGED_KEYS.get());
+        assertEquals("override", CONFIG.getString("NAME"));
+        assertEquals(80, CONFIG.getInteger("PORT", 0));
+        assertEquals("example.com", CONFIG.getString("HOST"));
+
+        //A missing primary File is still an error.
+        assertThrows(NoSuchFileException.class, () -> new Configuration(List.of(LOCAL, directory.resolve("missing.env")), false).load());
+    }
+
+    @Test
+    public void testConfigInterpolation() throws Exception {
+        final Path PATH = directory.resolve(".env");
+        Files.writeString(PATH, "HOST=localhost\nPORT=5432\nURL=postgres://${HOST}:${PORT}/db\nNAME=${URL}?ssl=${MISSING}\n"
+                + "SINGLE='${HOST}x'\nESCAPED=$${HOST}-${HOST}\n");
+
+        final Configuration CONFIG = new Configuration(PATH);
+        CONFIG.load();
+
+        assertEquals("postgres://localhost:5432/db", CONFIG.getString("URL"));
+        assertEquals("postgres://localhost:5432/db?ssl=", CONFIG.getString("NAME"));
+        assertEquals("${HOST}x", CONFIG.getString("SINGLE"));
+        assertEquals("${HOST}-localhost", CONFIG.getString("ESCAPED"));
+
+        //Strict references reject a missing key rather than expanding it to nothing, keeping the previous settings.
+        final Configuration STRICT = new Configuration(PATH);
+        STRICT.setStrictReferences(true);
+        assertThrows(IllegalArgumentException.class, STRICT::load);
+        assertEquals(0, STRICT.getKeys().length);
+
+        //Cycles are rejected when they're loaded or set, so no read can run into one.
+        Files.writeString(directory.resolve("loop.env"), "A=${B}\nB=${A}\n");
+        assertThrows(IllegalArgumentException.class, () -> new Configuration(directory.resolve("loop.env")).load());
+
+        assertThrows(IllegalArgumentException.class, () -> CONFIG.set("HOST", "${NAME}"));
+        assertEquals("postgres://localhost:5432/db", CONFIG.getString("URL"));
+        assertEquals(OptionalInt.of(5432), CONFIG.findInteger("PORT"));
+        assertThrows(NullPointerException.class, () -> CONFIG.set("HOST", (String) null));
+
+        //Changing a key must only expand the keys that depend on it again.
+        final AtomicReference<Set<String>> CHANGED_KEYS = new AtomicReference<>();
+        CONFIG.addListener((configuration, changedKeys) -> CHANGED_KEYS.set(changedKeys));
+
+        CONFIG.set("HOST", "example.com");
+        assertEquals(Set.of("HOST", "URL", "NAME", "ESCAPED"), CHANGED_KEYS.get());
+        assertEquals("postgres://example.com:5432/db?ssl=", CONFIG.getString("NAME"));
+
+        CONFIG.set("PORT", "${PORT_NUMBER}");
+        CONFIG.set("PORT_NUMBER", 6543);
+        assertEquals(6543, CONFIG.getInteger("PORT", 0));
+        assertEquals("postgres://example.com:6543/db", CONFIG.getString("URL"));
+
+        //The references are saved rather than their expansion.
+        CONFIG.save();
+        assertTrue(Files.readString(PATH).contains("PORT=${PORT_NUMBER}\n"));
+
+        //A reference names a key as it's written, and only finds a key in another case while keys are case-insensitive.
+        CONFIG.set("low", "v");
+        CONFIG.set("REF", "${low}/${ port_number }");
+        assertEquals("v/", CONFIG.getString("REF"));
+
+        CONFIG.setCaseInsensitiveKeys(true);
+        assertEquals("v/6543", CONFIG.getString("REF"));
+
+        CONFIG.set("Port_Number", 7654);
+        assertEquals(Set.of("PORT_NUMBER", "PORT", "URL", "NAME", "REF"), CHANGED_KEYS.get());
+        assertEquals("v/7654", CONFIG.getString("REF"));
+
+        assertThrows(IllegalArgumentException.class, () -> CONFIG.set("low", "${ref}"));
+    }
+
+    @Test
+    public void testConfigRegistry() throws Exception {
+        for (int i = 0; i < 20; i++)
+            Files.writeString(directory.resolve("tenant" + i + ".env"), "NAME=tenant" + i + "\nREGION=eu-west\n");
+
+        Files.writeString(directory.resolve("ignored.txt"), "NAME=ignored\n");
+        final Path REMOVED = Files.writeString(directory.resolve("removed.env"), "NAME=removed\n");
+
+        //Remove a File once it has been listed, so loading it fails.
+        final ConfigurationRegistry REGISTRY = ConfigurationRegistry.load(directory, "*.env", task -> {
+            try {
+                Files.deleteIfExists(REMOVED);
+            }
+            catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+
+            task.run();
+        });
+
+        assertEquals(20, REGISTRY.getConfigurations().size());
+        assertEquals(Set.of(REMOVED), REGISTRY.getFailures().keySet());
+        assertTrue(REGISTRY.getFailures().get(REMOVED) instanceof NoSuchFileException);
+        assertEquals("tenant7", REGISTRY.get(directory.resolve("tenant7.env")).getString("NAME"));
+
+        //The shared keys and region are pooled once across every tenant.
+        assertEquals(2 + 1 + 20, REGISTRY.getPooledStringCount());
+    }
+
+    @Test
+    public void testConfigDeferredLoad() throws Exception {
+        final Path PATH = directory.resolve(".env");
+
+        //Nothing is read until the first getter, so the File doesn't need to exist yet.
+        final Configuration CONFIG = new Configuration(PATH).loadOnFirstUse();
+        assertThrows(UncheckedIOException.class, () -> CONFIG.getString("NAME"));
+
+        Files.writeString(PATH, "NAME=lazy\n");
+        assertEquals("lazy", CONFIG.getString("NAME"));
+
+        Files.writeString(PATH, "NAME=async\n");
+        assertSame(CONFIG, CONFIG.loadAsync().get(30, TimeUnit.SECONDS));
+        assertEquals("async", CONFIG.getString("NAME"));
+
+        final ExecutionException EXCEPTION = assertThrows(ExecutionException.class,
+                () -> new Configuration(directory.resolve("missing.env")).loadAsync().get(30, TimeUnit.SECONDS));
+        assertTrue(EXCEPTION.getCause() instanceof NoSuchFileException);
+    }
+
+    @Test
+    public void testConfigMetrics() throws Exception {
+        final Path PATH = directory.resolve(".env");
+        Files.writeString(PATH, "PORT=80\nNAME=app\nBAD_PORT=eighty\n");
+
+        final Configuration CONFIG = new Configuration(PATH);
+        final CountingMetrics METRICS = new CountingMetrics();
+        CONFIG.setMetrics(METRICS);
+        CONFIG.load();
+
+        CONFIG.getString("NAME");
+        CONFIG.getString("MISSING", "fallback");
+        CONFIG.getInteger("PORT", 0);
+        CONFIG.getInteger("BAD_PORT", 0);
+        CONFIG.findInteger("MISSING");
+        assertThrows(NumberFormatException.class, () -> CONFIG.getInteger("BAD_PORT"));
+
+        assertEquals(2, METRICS.getLookups(ConfigurationMetrics.ValueType.STRING));
+        assertEquals(1, METRICS.getMisses(ConfigurationMetrics.ValueType.STRING));
+        assertEquals(1, METRICS.getFallbacks(ConfigurationMetrics.ValueType.STRING));
+        assertEquals(4, METRICS.getLookups(ConfigurationMetrics.ValueType.INTEGER));
+        assertEquals(1, METRICS.getMisses(ConfigurationMetrics.ValueType.INTEGER));
+        assertEquals(2, METRICS.getFallbacks(ConfigurationMetrics.ValueType.INTEGER));
+        assertEquals(2, METRICS.getParseFailures(ConfigurationMetrics.ValueType.INTEGER));
+
+        CONFIG.set("PORT", 8080);
+        CONFIG.save();
+
+        assertEquals(1, METRICS.getLoads());
+        assertEquals(1, METRICS.getSaves());
+    }
+
+    @Test
+    public void testConfigFreeze() throws Exception {
+        final Path PATH = directory.resolve(".env");
+        final StringBuilder TEXT_BUILDER = new StringBuilder("URL=${HOST}:80\nHOST=localhost\n");
+
+        for (int i = 0; i < 1000; i++)
+            TEXT_BUILDER.append("KEY_").append(i).append('=').append(i).append('\n');
+
+        Files.writeString(PATH, TEXT_BUILDER.toString());
+
+        final Configuration CONFIG = new Configuration(PATH);
+        CONFIG.load();
+        CONFIG.set("PENDING", "saved");
+
+        assertSame(CONFIG, CONFIG.freeze());
+        assertTrue(CONFIG.isFrozen());
+
+        assertEquals(1003, CONFIG.getKeys().length);
+        assertEquals(999, CONFIG.getInteger("KEY_999", -1));
+        assertEquals("localhost:80", CONFIG.getString("URL"));
+        assertNull(CONFIG.getString("MISSING"));
+
+        assertThrows(UnsupportedOperationException.class, () -> CONFIG.set("KEY_1", "changed"));
+        assertThrows(UnsupportedOperationException.class, CONFIG::load);
+        assertEquals(1, CONFIG.getInteger("KEY_1", -1));
+
+        //Values set before freezing can still be saved.
+        CONFIG.save();
+        assertTrue(Files.readString(PATH).endsWith("PENDING=saved\n"));
+    }
+
+    @Test
+    public void testConfigCaseInsensitiveKeys() throws Exception {
+        final Path PATH = directory.resolve(".env");
+        Files.writeString(PATH, "port=80\nHost=localhost\n");
+
+        final Configuration CONFIG = new Configuration(PATH);
+        CONFIG.load();
+        assertNull(CONFIG.getString("port"));
+
+        CONFIG.setCaseInsensitiveKeys(true);
+        assertEquals(80, CONFIG.getInteger("port", 0));
+        assertEquals("localhost", CONFIG.getString("hOsT"));
+        assertEquals("localhost", CONFIG.getString(Configuration.key("host")));
+        assertTrue(CONFIG.keyEquals("Port", 80));
+
+        //Setting a key in any case updates the loaded key rather than adding another.
+        assertEquals("80", CONFIG.set("Port", 8080));
+        CONFIG.set("new_key", "added");
+        assertEquals(3, CONFIG.getKeys().length);
+        assertEquals("added", CONFIG.getString("New_Key"));
+
+        //Switching back looks keys up by their exact case again.
+        CONFIG.setCaseInsensitiveKeys(false);
+        assertNull(CONFIG.getString("new_key"));
+        assertEquals("added", CONFIG.getString("NEW_KEY"));
+        CONFIG.setCaseInsensitiveKeys(true);
+        CONFIG.set("NEW_key", "added");
+        assertEquals(3, CONFIG.getKeys().length);
+
+        CONFIG.save();
+        assertEquals("port=8080\nHost=localhost\nNEW_KEY=added\n", Files.readString(PATH));
+
+        CONFIG.freeze();
+        assertEquals(8080, CONFIG.getInteger("PoRt", 0));
+    }
+
+    @Test
+    public void testConfigBind() throws Exception {
+        final Path PATH = directory.resolve(".env");
+        Files.writeString(PATH, "DATABASE_URL=jdbc:h2:mem\nPOOL_SIZE=8\nDEBUG=true\nTIMEOUT=30s\nHOSTS=a, b\n");
+
+        final Configuration CONFIG = new Configuration(PATH);
+        CONFIG.load();
+
+        final BoundRecord RECORD = CONFIG.bind(BoundRecord.class);
+        assertEquals(new BoundRecord("jdbc:h2:mem", 8, true, Duration.ofSeconds(30), List.of("a", "b"), null), RECORD);
+
+        final BoundBean BEAN = CONFIG.bind(BoundBean.class);
+        assertEquals("jdbc:h2:mem", BEAN.databaseUrl);
+        assertEquals(8, BEAN.poolSize);
+        assertEquals(Long.valueOf(5), BEAN.retries);
+
+        //Binding again reads the latest settings, and a record's missing primitive is reported rather than defaulted.
+        Files.writeString(PATH, "DATABASE_URL=jdbc:h2:file\nPOOL_SIZE=16\n");
+        CONFIG.load();
+        assertEquals(16, CONFIG.bind(BoundBean.class).poolSize);
+        assertThrows(MissingKeyException.class, () -> CONFIG.bind(BoundRecord.class));
+
+        //A bean's missing primitive keeps the value it was constructed with.
+        Files.writeString(PATH, "DATABASE_URL=jdbc:h2:file\n");
+        CONFIG.load();
+        assertEquals(10, CONFIG.bind(BoundBean.class).poolSize);
+
+        CONFIG.set("DEBUG", "maybe");
+        CONFIG.set("POOL_SIZE", "many");
+        assertThrows(NumberFormatException.class, () -> CONFIG.bind(BoundBean.class));
+        assertThrows(IllegalArgumentException.class, () -> CONFIG.bind(Object[].class));
+    }
+
+    @Test
+    public void testConfigReloadIfChanged() throws Exception {
+        final Path PATH = directory.resolve(".env");
+        Files.writeString(PATH, "PORT=80\nHOST=localhost\n");
+
+        final Configuration CONFIG = new Configuration(PATH);
+        assertTrue(CONFIG.reloadIfChanged());
+        assertFalse(CONFIG.reloadIfChanged());
+
+        final AtomicReference<Set<String>> CHANGED_KEYS = new AtomicReference<>();
+        CONFIG.addListener((configuration, changedKeys) -> CHANGED_KEYS.set(changedKeys));
+        CONFIG.set("LOCAL", "kept");
+
+        //Set the modification time explicitly, as the write may land within the file system's timestamp resolution.
+        Files.writeString(PATH, "PORT=8080\nHOST=localhost\n");
+        Files.setLastModifiedTime(PATH, FileTime.fromMillis(Files.getLastModifiedTime(PATH).toMillis() + 2000));
+
+        assertTrue(CONFIG.reloadIfChanged());
+        assertEquals(Set.of("PORT"), CHANGED_KEYS.get());
+        assertEquals(8080, CONFIG.getInteger("PORT", 0));
+        assertEquals("kept", CONFIG.getString("LOCAL"));
+
+        //A file touched without changing its text is only skipped when its contents are compared.
+        Files.setLastModifiedTime(PATH, FileTime.fromMillis(Files.getLastModifiedTime(PATH).toMillis() + 2000));
+        assertFalse(CONFIG.reloadIfChanged(true));
+        assertFalse(CONFIG.reloadIfChanged());
+
+        //Saving doesn't make the file look changed to the Configuration that wrote it.
+        CONFIG.save();
+        assertFalse(CONFIG.reloadIfChanged());
+    }
+
+    @Test
+    public void testConfigEncryptedValues() throws Exception {
+        final Path KEY_PATH = directory.resolve("dotenv.key");
+        Files.writeString(KEY_PATH, Base64.getEncoder().encodeToString(new byte[32]) + "\n");
+
+        final Configuration ENCRYPTER = new Configuration(directory.resolve("unused.env"));
+        assertThrows(IllegalStateException.class, () -> ENCRYPTER.encrypt("secret"));
+        ENCRYPTER.setEncryptionKey(KEY_PATH);
+
+        final String PASSWORD = ENCRYPTER.encrypt("hunter2");
+        final String TOKEN = ENCRYPTER.encrypt("t0ken");
+        assertNotEquals(PASSWORD, ENCRYPTER.encrypt("hunter2"));
+
+        final Path PATH = directory.resolve(".env");
+        Files.writeString(PATH, "PASSWORD=" + PASSWORD + "\nTOKEN=" + TOKEN + "\nURL=user:${PASSWORD}@host\nBROKEN=enc:AAAA\n");
+
+        //Without a key, encrypted values are read as they're written.
+        final Configuration PLAIN = new Configuration(PATH);
+        PLAIN.load();
+        assertEquals(PASSWORD, PLAIN.getString("PASSWORD"));
+
+        final Configuration CONFIG = new Configuration(PATH);
+        CONFIG.setEncryptionKey(KEY_PATH);
+        CONFIG.load();
+
+        assertEquals("hunter2", CONFIG.getString("PASSWORD"));
+        assertEquals("user:hunter2@host", CONFIG.getString("URL"));
+        assertThrows(IllegalStateException.class, () -> CONFIG.getString("BROKEN"));
+
+        //Saving only rewrites changed keys, so the ciphertext is kept exactly as it was.
+        CONFIG.set("OTHER", "1");
+        CONFIG.save();
+        assertTrue(Files.readString(PATH).startsWith("PASSWORD=" + PASSWORD + "\nTOKEN=" + TOKEN + "\n"));
+    }
+
+    @Test
+    public void testConfigSubset() throws Exception {
+        final Path PATH = directory.resolve(".env");
+        Files.writeString(PATH, "DB_URL=jdbc:h2:mem\nDB_POOL_SIZE=8\nDBX=other\nCACHE_TTL=60\nA=1\n");
+
+        final Configuration CONFIG = new Configuration(PATH);
+        CONFIG.load();
+
+        assertArrayEquals(new String[]{"DB_POOL_SIZE", "DB_URL"}, CONFIG.getKeys("DB_"));
+        assertArrayEquals(new String[]{"DBX", "DB_POOL_SIZE", "DB_URL"}, CONFIG.getKeys("DB"));
+        assertEquals(0, CONFIG.getKeys("Z").length);
+
+        final Map<String, String> DATABASE = CONFIG.subset("DB_");
+        assertEquals(Map.of("URL", "jdbc:h2:mem", "POOL_SIZE", "8"), DATABASE);
+        assertNull(DATABASE.get("X"));
+        assertThrows(UnsupportedOperationException.class, () -> DATABASE.put("URL", "changed"));
+
+        //The view is live, so settings set after it was created are seen through it.
+        CONFIG.set("DB_USER", "admin");
+        assertEquals(3, DATABASE.size());
+        assertEquals("admin", DATABASE.get("USER"));
+
+        CONFIG.setCaseInsensitiveKeys(true);
+        assertEquals("60", CONFIG.subset("cache_").get("ttl"));
+    }
+
+    @Test
+    public void testConfigBatchAndSnapshot() throws Exception {
+        final Path PATH = directory.resolve(".env");
+        Files.writeString(PATH, "A=1\nB=2\nREF=${A}-${B}\nGONE=x\n");
+
+        final Configuration CONFIG = new Configuration(PATH);
+        CONFIG.load();
+
+        final AtomicReference<Set<String>> CHANGED_KEYS = new AtomicReference<>();
+        CONFIG.addListener((configuration, changedKeys) -> CHANGED_KEYS.set(changedKeys));
+
+        final Map<String, String> BEFORE = CONFIG.snapshot();
+        CONFIG.batch(batch -> batch.set("A", 10).set("B", "20").set("C", true));
+
+        assertEquals(Set.of("A", "B", "C", "REF"), CHANGED_KEYS.get());
+        assertEquals("10-20", CONFIG.getString("REF"));
+        assertEquals(Map.of("A", "1", "B", "2", "REF", "1-2", "GONE", "x"), BEFORE);
+
+        //Every version must stay consistent, including keys whose hashes collide, such as those ending "Aa" and "BB".
+        final Map<String, String> EXPECTED = new HashMap<>(CONFIG.snapshot());
+        for (int i = 0; i < 2000; i++) {
+            final String KEY = "K" + (i % 300) + (i % 2 == 0 ? "Aa" : "BB");
+            CONFIG.set(KEY, String.valueOf(i));
+            EXPECTED.put(KEY, String.valueOf(i));
+        }
+
+        assertEquals(EXPECTED, CONFIG.snapshot());
+
+        //Removing a key from the file removes it from the next version, while keys set in code are kept.
+        Files.writeString(PATH, "A=1\nB=2\nREF=${A}-${B}\n");
+        Files.setLastModifiedTime(PATH, FileTime.fromMillis(Files.getLastModifiedTime(PATH).toMillis() + 2000));
+        assertTrue(CONFIG.reloadIfChanged());
+
+        EXPECTED.remove("GONE");
+        assertEquals(EXPECTED, CONFIG.snapshot());
+        assertEquals(EXPECTED.size(), CONFIG.getKeys().length);
+    }
+
+    @Test
+    public void testConfigSchema() throws Exception {
+        final ConfigurationSchema SCHEMA = new ConfigurationSchema();
+        SCHEMA.define("PORT", ConfigurationMetrics.ValueType.INTEGER).range(1, 65535).defaultValue("8080");
+        SCHEMA.define("URL", ConfigurationMetrics.ValueType.STRING).pattern("https?://.+").required();
+        SCHEMA.define("TIMEOUT", ConfigurationMetrics.ValueType.DURATION).range(Duration.ofSeconds(1), Duration.ofMinutes(1));
+        SCHEMA.define("DEBUG", ConfigurationMetrics.ValueType.BOOLEAN);
+        assertThrows(IllegalArgumentException.class, () -> SCHEMA.define("NAME", ConfigurationMetrics.ValueType.STRING).range(0, 1));
+
+        //Every violation is reported at once, and the previous settings are kept.
+        final Path PATH = directory.resolve(".env");
+        Files.writeString(PATH, "PORT=70000\nTIMEOUT=5m\nDEBUG=maybe\n");
+
+        final Configuration CONFIG = new Configuration(PATH);
+        CONFIG.setSchema(SCHEMA);
+
+        final SchemaViolationException EXCEPTION = assertThrows(SchemaViolationException.class, CONFIG::load);
+        assertEquals(4, EXCEPTION.getViolations().size());
+        assertTrue(EXCEPTION.getViolations().get(0).startsWith("PORT:"));
+        assertEquals(0, CONFIG.getKeys().length);
+
+        Files.writeString(PATH, "HOST=example.com\nURL=https://${HOST}\nTIMEOUT=30s\n");
+        CONFIG.load();
+
+        assertEquals(8080, CONFIG.getInteger("PORT"));
+        assertEquals("https://example.com", CONFIG.getString("URL"));
+        assertEquals(Duration.ofSeconds(30), CONFIG.getDuration("TIMEOUT"));
+        assertFalse(CONFIG.findBoolean("DEBUG").isPresent());
+
+        //Changes that break the schema are rejected without changing anything.
+        assertThrows(SchemaViolationException.class, () -> CONFIG.batch(batch -> batch.set("PORT", 9000).set("HOST", "")));
+        assertEquals(8080, CONFIG.getInteger("PORT"));
+        assertEquals("https://example.com", CONFIG.getString("URL"));
+
+        CONFIG.set("PORT", 9000);
+        assertEquals(9000, CONFIG.getInteger("PORT"));
+    }
+
     private static Configuration config;
+
+    private static final ConfigurationKey HANDLE_INTEGER = Configuration.key("TEST_HANDLE_INTEGER");
+    private static final ConfigurationKey HANDLE_MISSING = Configuration.key("TEST_HANDLE_MISSING");
+
+    @TempDir
+    Path directory;
+
+    private record BoundRecord(String databaseUrl, int poolSize, boolean debug, Duration timeout, List<String> hosts, Long retries) {}
+
+    public static class BoundBean {
+        public void setDatabaseUrl(String databaseUrl) {
+            this.databaseUrl = databaseUrl;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        public void setRetries(Long retries) {
+            this.retries = retries;
+        }
+
+        //Not a setting, so binding must skip it rather than reject the bean.
+        public void setListener(Object listener) {
+            throw new AssertionError("Binding set a property that isn't a setting.");
+        }
+
+        private String databaseUrl;
+        private int poolSize = 10;
+        private Long retries = 5L;
+    }
 }
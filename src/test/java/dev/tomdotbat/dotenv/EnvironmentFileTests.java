@@ -0,0 +1,166 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EnvironmentFileTests {
+    @Test
+    public void testParseValues() throws IOException {
+        final Map<String, String> SETTINGS = load(
+                "# A comment line\r\n" +
+                "plain = hello world \r\n" +
+                "DOUBLE=\"quoted value\"\n" +
+                "SINGLE='it's quoted' # trailing comment\n" +
+                "HASH=\"a#b\"\n" +
+                "MULTI=\"first\nsecond\" # spans lines\n" +
+                "ESCAPED=\"say \\\"hi\\\"\\n\"\n" +
+                "STRAY=\"a\" b\n" +
+                "WIN=\"C:\\new\\temp\"\n" +
+                "WIN_PLAIN=C:\\new\\temp\n" +
+                "COMMENTED=value # comment\n" +
+                "EQUALS=a=b\n" +
+                "EMPTY=\n" +
+                "NO_SEPARATOR\n" +
+                "# IGNORED=true\n" +
+                "LAST=end"
+        );
+
+        assertEquals(13, SETTINGS.size());
+        assertEquals("hello world", SETTINGS.get("PLAIN"));
+        assertEquals("quoted value", SETTINGS.get("DOUBLE"));
+        assertEquals("it's quoted", SETTINGS.get("SINGLE"));
+        assertEquals("a#b", SETTINGS.get("HASH"));
+        //A Configuration loads every setting from a single line, and keeps backslashes as they are.
+        assertEquals("\"first", SETTINGS.get("MULTI"));
+        assertEquals("say \\\"hi\\\"\\n", SETTINGS.get("ESCAPED"));
+        assertEquals("\"a\" b", SETTINGS.get("STRAY"));
+        assertEquals("C:\\new\\temp", SETTINGS.get("WIN"));
+        assertEquals("C:\\new\\temp", SETTINGS.get("WIN_PLAIN"));
+        assertEquals("value", SETTINGS.get("COMMENTED"));
+        assertEquals("a=b", SETTINGS.get("EQUALS"));
+        assertEquals("", SETTINGS.get("EMPTY"));
+        assertEquals("end", SETTINGS.get("LAST"));
+        assertFalse(SETTINGS.containsKey("IGNORED"));
+    }
+
+    @Test
+    public void testParseEmptyFile() throws IOException {
+        assertTrue(load("").isEmpty());
+        assertTrue(load("\n\r\n# only a comment").isEmpty());
+    }
+
+    @Test
+    public void testLoadLargeFiles() throws IOException {
+        //Both the buffered and memory-mapped paths must survive lines and characters split across buffer boundaries.
+        for (final int SIZE: new int[]{10000, 100000}) {
+            final String LONG_VALUE = "\u00e9\u20ac".repeat(10000);
+            final StringBuilder TEXT_BUILDER = new StringBuilder("LONG=").append(LONG_VALUE).append('\n');
+
+            for (int i = 0; i < SIZE; i++)
+                TEXT_BUILDER.append("KEY_").append(i).append("=\u00e9").append(i).append('\n');
+
+            final Map<String, String> SETTINGS = load(TEXT_BUILDER.toString());
+
+            assertEquals(SIZE + 1, SETTINGS.size());
+            assertEquals(LONG_VALUE, SETTINGS.get("LONG"));
+            assertEquals("\u00e9" + (SIZE - 1), SETTINGS.get("KEY_" + (SIZE - 1)));
+        }
+    }
+
+    @Test
+    public void testSaveChangedSettings() throws IOException {
+        load("# Header\r\nport = 80 # the port\r\nHOST=localhost\r\n");
+
+        final EnvironmentFile FILE = new EnvironmentFile(directory.resolve(".env"));
+        FILE.save(Map.of("PORT", "8080", "NEW", " padded # value"));
+
+        final String TEXT = Files.readString(directory.resolve(".env"));
+        assertEquals("# Header\r\nport=8080 # the port\r\nHOST=localhost\r\nNEW=\" padded # value\"\n", TEXT);
+
+        final Map<String, String> SETTINGS = FILE.load();
+        assertEquals("8080", SETTINGS.get("PORT"));
+        assertEquals(" padded # value", SETTINGS.get("NEW"));
+
+        //A quote followed by a comment would end a double-quoted value, so it is single-quoted, and backslashes are kept as they are.
+        FILE.save(Map.of("QUOTE", "a\"#b", "PATH", "C:\\new #1"));
+
+        final Map<String, String> QUOTED = FILE.load();
+        assertEquals("a\"#b", QUOTED.get("QUOTE"));
+        assertEquals("C:\\new #1", QUOTED.get("PATH"));
+
+        //A line break could start another setting, so it is rejected without touching the File.
+        final String BEFORE = Files.readString(directory.resolve(".env"));
+        assertThrows(IllegalArgumentException.class, () -> FILE.save(Map.of("LINES", "x\nEVIL=1")));
+        assertThrows(IllegalArgumentException.class, () -> FILE.save(Map.of("BOTH", "\"#'#${A}")));
+        assertEquals(BEFORE, Files.readString(directory.resolve(".env")));
+
+        //Loading keeps the last line of a duplicated key, so every line of it must be rewritten.
+        Files.writeString(directory.resolve(".env"), "A=1\nB=x\nA=2 # again\n");
+        FILE.save(Map.of("A", "3"));
+        assertEquals("A=3\nB=x\nA=3 # again\n", Files.readString(directory.resolve(".env")));
+        assertEquals("3", FILE.load().get("A"));
+
+        //Only the File itself should be left behind by the atomic write.
+        try (final Stream<Path> FILES = Files.list(directory)) {
+            assertEquals(1, FILES.count());
+        }
+    }
+
+    @Test
+    public void testCompiledCache() throws IOException {
+        final Path PATH = directory.resolve(".env");
+        Files.writeString(PATH, "A=1\nB=two\n");
+
+        final EnvironmentFile FILE = new EnvironmentFile(PATH);
+        FILE.setCompiledCacheEnabled(true);
+
+        assertEquals(Map.of("A", "1", "B", "two"), FILE.load());
+        assertTrue(Files.exists(FILE.getCompiledCachePath()));
+        assertEquals(Map.of("A", "1", "B", "two"), FILE.load());
+
+        //A changed source must be parsed again, rebuilding the cache.
+        Files.writeString(PATH, "A=3\n");
+        assertEquals(Map.of("A", "3"), FILE.load());
+        assertEquals(Map.of("A", "3"), FILE.load());
+
+        //A corrupt cache must be ignored rather than trusted.
+        final byte[] CACHE = Files.readAllBytes(FILE.getCompiledCachePath());
+        CACHE[CACHE.length - 12] ^= 1;
+        Files.write(FILE.getCompiledCachePath(), CACHE);
+        assertEquals(Map.of("A", "3"), FILE.load());
+    }
+
+    private Map<String, String> load(final String TEXT) throws IOException {
+        final Path PATH = directory.resolve(".env");
+        Files.writeString(PATH, TEXT);
+        return new EnvironmentFile(PATH).load();
+    }
+
+    @TempDir
+    Path directory;
+}
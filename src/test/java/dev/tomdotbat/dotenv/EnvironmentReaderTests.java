@@ -0,0 +1,122 @@
+/*
+ *  Copyright 2022 Thomas (Tom.bat) O'Sullivan
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *
+ *  You may obtain a copy of the License at:
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package dev.tomdotbat.dotenv;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EnvironmentReaderTests {
+    @Test
+    public void testReadSettings() throws IOException {
+        final String TEXT =
+                "# Header\r\n" +
+                "plain = hello world # greeting\r\n" +
+                "SINGLE='it's quoted'\n" +
+                "MULTI=\"first\n" +
+                "second\" # spans lines\n" +
+                "ESCAPED=\"tab\\there \\\"quoted\\\" C:\\path\"\n" +
+                "UNTERMINATED=\"a#b\n" +
+                "STRAY=\"a\" b\n" +
+                "QUOTED=\"c\"\n" +
+                "LAST=end";
+
+        final List<String> EVENTS = new ArrayList<>();
+        final EnvironmentVisitor VISITOR = new EnvironmentVisitor() {
+            @Override
+            public boolean visit(CharSequence key, CharSequence value, CharSequence comment, int lineNumber) {
+                EVENTS.add(lineNumber + ":" + key + "=" + value + (comment == null ? "" : "#" + comment));
+                return true;
+            }
+
+            @Override
+            public boolean visitComment(CharSequence comment, int lineNumber) {
+                EVENTS.add(lineNumber + ":#" + comment);
+                return true;
+            }
+        };
+
+        final List<String> EXPECTED = List.of(
+                "1:#Header",
+                "2:PLAIN=hello world#greeting",
+                "3:SINGLE=it's quoted",
+                "4:MULTI=first\nsecond#spans lines",
+                "6:ESCAPED=tab\there \"quoted\" C:\\path",
+                "7:UNTERMINATED=\"a#b",
+                "8:STRAY=\"a\" b",
+                "9:QUOTED=c",
+                "10:LAST=end"
+        );
+
+        assertTrue(EnvironmentReader.read(TEXT, VISITOR));
+        assertEquals(EXPECTED, EVENTS);
+
+        EVENTS.clear();
+        assertTrue(EnvironmentReader.read(new StringReader(TEXT), VISITOR));
+        assertEquals(EXPECTED, EVENTS);
+
+        EVENTS.clear();
+        assertTrue(EnvironmentReader.read(new ByteArrayInputStream(TEXT.getBytes(StandardCharsets.UTF_8)), VISITOR));
+        assertEquals(EXPECTED, EVENTS);
+    }
+
+    @Test
+    public void testReadLargeStreamAndStopEarly() throws IOException {
+        //Settings and characters split across buffer boundaries must survive, including a value larger than the buffer.
+        final String LONG_VALUE = "\u00e9\u20ac\n".repeat(10000);
+        final StringBuilder TEXT_BUILDER = new StringBuilder("LONG=\"").append(LONG_VALUE).append("\"\r\n");
+
+        for (int i = 0; i < 10000; i++)
+            TEXT_BUILDER.append("KEY_").append(i).append("=\u00e9").append(i).append("\r\n");
+
+        final byte[] BYTES = TEXT_BUILDER.toString().getBytes(StandardCharsets.UTF_8);
+        final int[] COUNT = new int[1];
+
+        assertTrue(EnvironmentReader.read(new ByteArrayInputStream(BYTES), (key, value, comment, lineNumber) -> {
+            if (COUNT[0]++ == 0)
+                assertEquals(LONG_VALUE, value.toString());
+            else if (COUNT[0] == 10001) {
+                assertEquals("KEY_9999", key.toString());
+                assertEquals("\u00e99999", value.toString());
+                assertEquals(10001 + 10000, lineNumber);
+            }
+
+            return true;
+        }));
+        assertEquals(10001, COUNT[0]);
+
+        //A multi-line value is searched once however many buffers it spans, including escapes split between them.
+        final String ESCAPED_TEXT = "ESCAPED=\"" + "a\\\"\n".repeat(20000) + "\"\nAFTER=1\n";
+        final List<String> VALUES = new ArrayList<>();
+
+        assertTrue(EnvironmentReader.read(new ByteArrayInputStream(ESCAPED_TEXT.getBytes(StandardCharsets.UTF_8)), (key, value, comment, lineNumber) ->
+                VALUES.add(key + "=" + value)));
+        assertEquals(List.of("ESCAPED=" + "a\"\n".repeat(20000), "AFTER=1"), VALUES);
+
+        COUNT[0] = 0;
+        assertFalse(EnvironmentReader.read(new ByteArrayInputStream(BYTES), (key, value, comment, lineNumber) -> ++COUNT[0] < 3));
+        assertEquals(3, COUNT[0]);
+    }
+}